@@ -0,0 +1,77 @@
+package integrations.turnitin.com.membersearcher.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import integrations.turnitin.com.membersearcher.client.JsonRecordReader;
+import integrations.turnitin.com.membersearcher.model.Membership;
+import integrations.turnitin.com.membersearcher.model.MembershipList;
+import integrations.turnitin.com.membersearcher.model.User;
+import integrations.turnitin.com.membersearcher.model.UserList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing the php-backend list payloads: binding the whole body from a String (the original client),
+ * from the raw bytes, and record by record with the streaming {@link JsonRecordReader}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DeserializationBenchmark {
+
+  @Param({"1000", "100000", "1000000"})
+  private int members;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private byte[] membershipsJson;
+  private byte[] usersJson;
+
+  @Setup
+  public void setUp() throws IOException {
+    final UserList users = RosterFixtures.users(members);
+    membershipsJson = objectMapper.writeValueAsBytes(RosterFixtures.memberships(users));
+    usersJson = objectMapper.writeValueAsBytes(users);
+  }
+
+  @Benchmark
+  public MembershipList membershipsFromString() throws IOException {
+    return objectMapper.readValue(new String(membershipsJson, StandardCharsets.UTF_8), MembershipList.class);
+  }
+
+  @Benchmark
+  public MembershipList membershipsFromBytes() throws IOException {
+    return objectMapper.readValue(new ByteArrayInputStream(membershipsJson), MembershipList.class);
+  }
+
+  @Benchmark
+  public void membershipsStreamed(final Blackhole blackhole) throws IOException {
+    JsonRecordReader.read(objectMapper, new ByteArrayInputStream(membershipsJson), "memberships", Membership.class, blackhole::consume);
+  }
+
+  @Benchmark
+  public UserList usersFromBytes() throws IOException {
+    return objectMapper.readValue(new ByteArrayInputStream(usersJson), UserList.class);
+  }
+
+  @Benchmark
+  public void usersStreamed(final Blackhole blackhole) throws IOException {
+    JsonRecordReader.read(objectMapper, new ByteArrayInputStream(usersJson), "users", User.class, blackhole::consume);
+  }
+}
@@ -0,0 +1,50 @@
+package integrations.turnitin.com.membersearcher.benchmark;
+
+import integrations.turnitin.com.membersearcher.model.Membership;
+import integrations.turnitin.com.membersearcher.model.MembershipList;
+import integrations.turnitin.com.membersearcher.model.UserList;
+import integrations.turnitin.com.membersearcher.service.MembershipJoiner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the membership/user hash join performed when a snapshot is loaded: indexing the users by id,
+ * attaching each user to its membership and ordering the result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class JoinBenchmark {
+
+  @Param({"1000", "100000", "1000000"})
+  private int members;
+
+  private UserList users;
+  private MembershipList memberships;
+
+  @Setup
+  public void setUp() {
+    users = RosterFixtures.users(members);
+    memberships = RosterFixtures.memberships(users);
+  }
+
+  @Benchmark
+  public List<Membership> join() {
+    return MembershipJoiner.join(memberships.getMemberships(), MembershipJoiner.indexUsers(users.getUsers()));
+  }
+}
@@ -0,0 +1,57 @@
+package integrations.turnitin.com.membersearcher.benchmark;
+
+import integrations.turnitin.com.membersearcher.model.Membership;
+import integrations.turnitin.com.membersearcher.model.MembershipList;
+import integrations.turnitin.com.membersearcher.model.User;
+import integrations.turnitin.com.membersearcher.model.UserList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates synthetic rosters shaped like the php-backend data: UUID ids, one user per membership
+ * and a handful of roles. A fixed seed keeps every run of a benchmark on the same data.
+ */
+public final class RosterFixtures {
+
+  private static final String[] ROLES = {"student", "student", "student", "instructor", "teaching_assistant"};
+
+  private RosterFixtures() {
+  }
+
+  /**
+   * @param size the number of users to generate
+   * @return the generated users
+   */
+  public static UserList users(final int size) {
+    final Random random = new Random(size);
+    final List<User> users = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      users.add(new User()
+          .setId(new UUID(random.nextLong(), random.nextLong()).toString())
+          .setName("User Number" + i)
+          .setEmail("user.number" + i + "@example.com"));
+    }
+    return new UserList().setUsers(users);
+  }
+
+  /**
+   * Generates one membership per user, in shuffled order, without the user attached.
+   *
+   * @param users the users the memberships belong to
+   * @return the generated memberships
+   */
+  public static MembershipList memberships(final UserList users) {
+    final Random random = new Random(users.getUsers().size() + 1L);
+    final List<Membership> memberships = new ArrayList<>(users.getUsers().size());
+    for (final User user : users.getUsers()) {
+      memberships.add(new Membership()
+          .setId(new UUID(random.nextLong(), random.nextLong()).toString())
+          .setUserId(user.getId())
+          .setRole(ROLES[random.nextInt(ROLES.length)]));
+    }
+    return new MembershipList().setMemberships(memberships);
+  }
+}
@@ -0,0 +1,87 @@
+package integrations.turnitin.com.membersearcher.benchmark;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import integrations.turnitin.com.membersearcher.cache.SerializedSnapshot;
+import integrations.turnitin.com.membersearcher.model.Membership;
+import integrations.turnitin.com.membersearcher.model.MembershipList;
+import integrations.turnitin.com.membersearcher.model.UserList;
+import integrations.turnitin.com.membersearcher.service.MembershipJoiner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Measures serializing the joined roster as returned by /api/course/members, both as a single
+ * JSON document and as the NDJSON stream. For comparison, it also measures serializing and gzipping
+ * the document on every request, against writing out its pre-serialized gzip bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SerializationBenchmark {
+
+  @Param({"1000", "100000", "1000000"})
+  private int members;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final ObjectWriter membershipWriter = objectMapper.writerFor(Membership.class)
+      .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+  private MembershipList roster;
+  private SerializedSnapshot serialized;
+
+  @Setup
+  public void setUp() {
+    final UserList users = RosterFixtures.users(members);
+    final MembershipList memberships = RosterFixtures.memberships(users);
+    roster = new MembershipList()
+        .setMemberships(MembershipJoiner.join(memberships.getMemberships(), MembershipJoiner.indexUsers(users.getUsers())));
+    serialized = SerializedSnapshot.of(objectMapper.writerFor(MembershipList.class), roster);
+  }
+
+  @Benchmark
+  public byte[] json() throws IOException {
+    return objectMapper.writeValueAsBytes(roster);
+  }
+
+  @Benchmark
+  public void ndjson() throws IOException {
+    try (JsonGenerator generator = objectMapper.createGenerator(OutputStream.nullOutputStream())) {
+      generator.setRootValueSeparator(new SerializedString("\n"));
+      for (final Membership membership : roster.getMemberships()) {
+        membershipWriter.writeValue(generator, membership);
+      }
+    }
+  }
+
+  @Benchmark
+  public void jsonGzip() throws IOException {
+    try (OutputStream out = new GZIPOutputStream(OutputStream.nullOutputStream())) {
+      objectMapper.writeValue(out, roster);
+    }
+  }
+
+  @Benchmark
+  public void preSerializedGzip() throws IOException {
+    OutputStream.nullOutputStream().write(serialized.getGzip());
+  }
+}
@@ -0,0 +1,126 @@
+package integrations.turnitin.com.membersearcher.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares platform and virtual threads when many requests block on a slow backend at once.
+ * <p>
+ * Each operation is a burst of concurrent requests, each of which blocks its thread on a call to an
+ * in-process stub backend that answers after a fixed delay. In the platform mode the requests run on a
+ * pool of 200 threads, Tomcat's default maximum, and the HTTP client uses its default executor; in the
+ * virtual mode both use a virtual thread per task, as with {@code spring.threads.virtual.enabled=true}.
+ * The sample time mode reports the percentiles, including p99, of the time to complete a burst.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ThreadingBenchmark {
+
+  private static final int PLATFORM_THREADS = 200;
+  private static final byte[] USER = "{\"id\":\"1\",\"name\":\"John Smith\",\"email\":\"jsmith@example.com\"}"
+      .getBytes(StandardCharsets.UTF_8);
+
+  @Param({"platform", "virtual"})
+  private String threads;
+
+  @Param({"100", "1000", "4000"})
+  private int concurrency;
+
+  @Param({"20"})
+  private long backendDelayMillis;
+
+  private HttpServer backend;
+  private ExecutorService backendExecutor;
+  private ExecutorService requestExecutor;
+  private HttpClient httpClient;
+  private HttpRequest request;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    backendExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    backend = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), concurrency);
+    backend.setExecutor(backendExecutor);
+    backend.createContext("/api.php/users/", exchange -> {
+      try {
+        Thread.sleep(backendDelayMillis);
+      } catch (final InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      exchange.getResponseHeaders().set("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, USER.length);
+      try (OutputStream body = exchange.getResponseBody()) {
+        body.write(USER);
+      }
+    });
+    backend.start();
+
+    final HttpClient.Builder builder = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1);
+    if ("virtual".equals(threads)) {
+      requestExecutor = Executors.newVirtualThreadPerTaskExecutor();
+      builder.executor(Executors.newVirtualThreadPerTaskExecutor());
+    } else {
+      requestExecutor = Executors.newFixedThreadPool(PLATFORM_THREADS);
+    }
+    httpClient = builder.build();
+    request = HttpRequest.newBuilder()
+        .uri(URI.create("http://localhost:" + backend.getAddress().getPort() + "/api.php/users/1"))
+        .GET()
+        .build();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    requestExecutor.shutdownNow();
+    httpClient.close();
+    backend.stop(0);
+    backendExecutor.shutdownNow();
+  }
+
+  @Benchmark
+  public int burst() throws InterruptedException, ExecutionException {
+    final List<Future<Integer>> responses = new ArrayList<>(concurrency);
+    for (int i = 0; i < concurrency; i++) {
+      responses.add(requestExecutor.submit(() -> httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray()).statusCode()));
+    }
+    int ok = 0;
+    for (final Future<Integer> response : responses) {
+      if (response.get() == 200) {
+        ok++;
+      }
+    }
+    return ok;
+  }
+}
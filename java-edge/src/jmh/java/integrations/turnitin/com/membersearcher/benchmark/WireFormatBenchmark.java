@@ -0,0 +1,80 @@
+package integrations.turnitin.com.membersearcher.benchmark;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import integrations.turnitin.com.membersearcher.client.JsonRecordReader;
+import integrations.turnitin.com.membersearcher.model.Membership;
+import integrations.turnitin.com.membersearcher.model.MembershipList;
+import integrations.turnitin.com.membersearcher.model.UserList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares JSON and CBOR for the backend membership payload: parsing it, as the backend client does, and
+ * writing the roster, as /api/course/members does. The payload sizes are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class WireFormatBenchmark {
+
+  @Param({"1000", "100000", "1000000"})
+  private int members;
+
+  private final ObjectMapper jsonMapper = new ObjectMapper()
+      .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+  private final ObjectMapper cborMapper = CBORMapper.builder()
+      .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+      .build();
+  private MembershipList memberships;
+  private byte[] membershipsJson;
+  private byte[] membershipsCbor;
+
+  @Setup
+  public void setUp() throws IOException {
+    final UserList users = RosterFixtures.users(members);
+    memberships = RosterFixtures.memberships(users);
+    membershipsJson = jsonMapper.writeValueAsBytes(memberships);
+    membershipsCbor = cborMapper.writeValueAsBytes(memberships);
+    System.out.printf("%nPayload of %d memberships: JSON %d bytes, CBOR %d bytes (%.0f%%)%n", members,
+        membershipsJson.length, membershipsCbor.length, 100.0 * membershipsCbor.length / membershipsJson.length);
+  }
+
+  @Benchmark
+  public void parseJson(final Blackhole blackhole) throws IOException {
+    JsonRecordReader.read(jsonMapper, new ByteArrayInputStream(membershipsJson), "memberships", Membership.class, blackhole::consume);
+  }
+
+  @Benchmark
+  public void parseCbor(final Blackhole blackhole) throws IOException {
+    JsonRecordReader.read(cborMapper, new ByteArrayInputStream(membershipsCbor), "memberships", Membership.class, blackhole::consume);
+  }
+
+  @Benchmark
+  public byte[] writeJson() throws IOException {
+    return jsonMapper.writeValueAsBytes(memberships);
+  }
+
+  @Benchmark
+  public byte[] writeCbor() throws IOException {
+    return cborMapper.writeValueAsBytes(memberships);
+  }
+}
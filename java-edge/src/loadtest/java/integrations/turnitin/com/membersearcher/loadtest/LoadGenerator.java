@@ -0,0 +1,122 @@
+package integrations.turnitin.com.membersearcher.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends a request at a fixed rate, whether or not the earlier ones have been answered, and records the latency of
+ * each.
+ * <p>
+ * The latency of a request is measured from the time it was due to be sent rather than from when it was actually
+ * sent, so a service that falls behind is charged for the queueing it causes instead of slowing the generator down
+ * with it (coordinated omission). Requests still unanswered after the timeout count as failed. Failed requests keep
+ * their latency, up to their failure, and a timed-out request at least the timeout: leaving them out would drop the
+ * slowest requests from the percentiles, which would then look best exactly when the service is overloaded.
+ */
+final class LoadGenerator {
+
+  private final HttpClient httpClient;
+  private final HttpRequest request;
+  private final int rate;
+  private final Duration timeout;
+
+  /**
+   * Constructor.
+   * @param httpClient the client sending the requests
+   * @param request    the request to send
+   * @param rate       the number of requests sent per second
+   * @param timeout    how long a request may take before it counts as failed
+   */
+  LoadGenerator(final HttpClient httpClient, final HttpRequest request, final int rate, final Duration timeout) {
+    this.httpClient = httpClient;
+    this.request = request;
+    this.rate = rate;
+    this.timeout = timeout;
+  }
+
+  /**
+   * Sends requests at the rate for the given time, then waits for the last of them to be answered.
+   *
+   * @param duration how long to send requests for
+   * @return the outcome of the requests
+   */
+  Result run(final Duration duration) {
+    final int count = (int) Math.max(1, duration.toNanos() * rate / TimeUnit.SECONDS.toNanos(1));
+    final long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+    final long[] latencies = new long[count];
+    final AtomicInteger succeeded = new AtomicInteger();
+    final AtomicInteger failed = new AtomicInteger();
+    final AtomicInteger timedOut = new AtomicInteger();
+    final CompletableFuture<?>[] sent = new CompletableFuture<?>[count];
+
+    final long start = System.nanoTime();
+    for (int i = 0; i < count; i++) {
+      final long due = start + i * interval;
+      final long wait = due - System.nanoTime();
+      if (wait > 0) {
+        LockSupport.parkNanos(wait);
+      }
+      final int index = i;
+      sent[i] = httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+          .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+          .whenComplete((response, ex) -> {
+            latencies[index] = System.nanoTime() - due;
+            if (ex == null && response.statusCode() == 200) {
+              succeeded.incrementAndGet();
+            } else {
+              failed.incrementAndGet();
+              if (ex instanceof TimeoutException
+                  || ex instanceof CompletionException && ex.getCause() instanceof TimeoutException) {
+                timedOut.incrementAndGet();
+              }
+            }
+          });
+    }
+    CompletableFuture.allOf(sent).exceptionally(ex -> null).join();
+    final long elapsed = System.nanoTime() - start;
+
+    Arrays.sort(latencies);
+    return new Result(count, succeeded.get(), failed.get(), timedOut.get(), elapsed, latencies);
+  }
+
+  /**
+   * The outcome of a run.
+   *
+   * @param sent      the number of requests sent
+   * @param succeeded the number of requests answered with 200
+   * @param failed    the number of requests that failed, timed out or were answered with another status
+   * @param timedOut  the number of failed requests that timed out
+   * @param elapsed   the time from the first request to the last answer, in nanoseconds
+   * @param latencies the latencies of every request sent, failed ones included, sorted, in nanoseconds
+   */
+  record Result(int sent, int succeeded, int failed, int timedOut, long elapsed, long[] latencies) {
+
+    /**
+     * @param quantile the quantile, between 0 and 1
+     * @return the latency below which that share of the requests sent were answered or failed, in milliseconds
+     */
+    double percentile(final double quantile) {
+      if (latencies.length == 0) {
+        return Double.NaN;
+      }
+      final int rank = (int) Math.ceil(quantile * latencies.length) - 1;
+      return latencies[Math.max(0, Math.min(latencies.length - 1, rank))] / 1e6;
+    }
+
+    /**
+     * @return the successful requests per second
+     */
+    double throughput() {
+      return succeeded * 1e9 / elapsed;
+    }
+  }
+}
@@ -0,0 +1,177 @@
+package integrations.turnitin.com.membersearcher.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the java-edge service at a fixed rate against a {@link StubBackend} and reports the throughput and the
+ * latency percentiles.
+ * <p>
+ * The stub runs in this process. Unless a {@code target} is given, the service is launched in a process of its own
+ * from the {@code edge.classpath}, pointed at the stub, and stopped afterwards. Requests are sent for the
+ * {@code warmup} first, to let the JIT compile and the caches fill, and measured for the {@code duration} after.
+ * <p>
+ * Arguments are {@code key=value} pairs: {@code target}, the base URL of an already running service, or
+ * {@code edge.classpath} to launch one; {@code path} (/api/course/members), {@code accept} (any type),
+ * {@code rate} per second (200), {@code warmup} (10s), {@code duration} (30s) and {@code timeout} (10s); plus the
+ * roster and fault options of {@link StubBackend#main}. Other arguments starting with {@code --} are passed on to the
+ * launched service, such as {@code --membership.join.in-backend=true}.
+ */
+public final class LoadTest {
+
+  private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(120);
+  private static final String MAIN_CLASS = "integrations.turnitin.com.membersearcher.MemberSearcherApplication";
+
+  private LoadTest() {
+  }
+
+  public static void main(final String... args) throws Exception {
+    final Map<String, String> options = options(args);
+    final List<String> edgeArgs = new ArrayList<>();
+    for (final String arg : args) {
+      if (arg.startsWith("--")) {
+        edgeArgs.add(arg);
+      }
+    }
+
+    final HttpClient httpClient = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(5))
+        .build();
+    try (StubBackend stub = StubBackend.fromOptions(options, Integer.parseInt(options.getOrDefault("port", "0")))) {
+      Process edge = null;
+      String target = options.get("target");
+      try {
+        if (target == null) {
+          final int port = freePort();
+          edge = launchEdge(options.get("edge.classpath"), port, stub.url(), edgeArgs);
+          target = "http://localhost:" + port;
+          awaitStartup(httpClient, edge, URI.create(target + "/actuator/health"));
+        }
+
+        final HttpRequest request = HttpRequest.newBuilder(URI.create(target + options.getOrDefault("path", "/api/course/members")))
+            .header("Accept", options.getOrDefault("accept", "*/*"))
+            .GET()
+            .build();
+        final int rate = Integer.parseInt(options.getOrDefault("rate", "200"));
+        final LoadGenerator generator = new LoadGenerator(httpClient, request, rate, duration(options.getOrDefault("timeout", "10s")));
+
+        final Duration warmup = duration(options.getOrDefault("warmup", "10s"));
+        System.out.printf("Warming up %s at %d requests/s for %s%n", request.uri(), rate, warmup);
+        generator.run(warmup);
+
+        final long backendRequests = stub.getRequests();
+        final Duration duration = duration(options.getOrDefault("duration", "30s"));
+        System.out.printf("Measuring at %d requests/s for %s%n", rate, duration);
+        report(generator.run(duration), stub.getRequests() - backendRequests);
+      } finally {
+        if (edge != null) {
+          edge.destroy();
+          if (!edge.waitFor(10, TimeUnit.SECONDS)) {
+            edge.destroyForcibly().waitFor();
+          }
+        }
+      }
+    }
+  }
+
+  private static void report(final LoadGenerator.Result result, final long backendRequests) {
+    System.out.println();
+    System.out.printf("Requests    %d sent, %d succeeded, %d failed in %.1f s%n",
+        result.sent(), result.succeeded(), result.failed(), result.elapsed() / 1e9);
+    System.out.printf("Throughput  %.1f requests/s%n", result.throughput());
+    System.out.printf("Latency     p50 %.2f ms   p99 %.2f ms   p999 %.2f ms   max %.2f ms   (over all sent, %d failed, %d timed out)%n",
+        result.percentile(0.5), result.percentile(0.99), result.percentile(0.999), result.percentile(1),
+        result.failed(), result.timedOut());
+    System.out.printf("Backend     %d requests to the stub%n", backendRequests);
+  }
+
+  /**
+   * Launches the service with the Java executable running this process.
+   */
+  private static Process launchEdge(final String classpath, final int port, final String backend,
+                                    final List<String> edgeArgs) throws IOException {
+    if (classpath == null) {
+      throw new IllegalArgumentException("Either target=<url> or edge.classpath=<classpath> is required");
+    }
+    final String java = ProcessHandle.current().info().command()
+        .orElse(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    final List<String> command = new ArrayList<>(List.of(java, "-cp", classpath, MAIN_CLASS,
+        "--server.port=" + port, "--backend.host=" + backend, "--spring.docker.compose.enabled=false"));
+    command.addAll(edgeArgs);
+    final File log = File.createTempFile("java-edge-loadtest", ".log");
+    System.out.println("Launching java-edge on port " + port + ", logging to " + log);
+    return new ProcessBuilder(command)
+        .redirectErrorStream(true)
+        .redirectOutput(log)
+        .start();
+  }
+
+  private static void awaitStartup(final HttpClient httpClient, final Process edge, final URI health) throws InterruptedException {
+    final long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+    final HttpRequest request = HttpRequest.newBuilder(health).timeout(Duration.ofSeconds(5)).GET().build();
+    while (System.nanoTime() < deadline) {
+      if (!edge.isAlive()) {
+        throw new IllegalStateException("java-edge exited with " + edge.exitValue());
+      }
+      try {
+        if (httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+          return;
+        }
+      } catch (final IOException ex) {
+        // Not listening yet.
+      }
+      Thread.sleep(100);
+    }
+    throw new IllegalStateException("java-edge did not start within " + STARTUP_TIMEOUT);
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  /**
+   * @param args the arguments of a main method
+   * @return the {@code key=value} arguments, by key; arguments starting with {@code --} are left out
+   */
+  static Map<String, String> options(final String... args) {
+    final Map<String, String> options = new LinkedHashMap<>();
+    for (final String arg : args) {
+      final int separator = arg.indexOf('=');
+      if (!arg.startsWith("--") && separator > 0) {
+        options.put(arg.substring(0, separator), arg.substring(separator + 1));
+      }
+    }
+    return options;
+  }
+
+  /**
+   * @param value a duration such as {@code 250ms}, {@code 30s} or {@code 5m}
+   * @return the duration
+   */
+  static Duration duration(final String value) {
+    if (value.endsWith("ms")) {
+      return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+    }
+    final long amount = Long.parseLong(value.substring(0, value.length() - 1));
+    return switch (value.charAt(value.length() - 1)) {
+      case 's' -> Duration.ofSeconds(amount);
+      case 'm' -> Duration.ofMinutes(amount);
+      default -> throw new IllegalArgumentException("Unsupported duration: " + value);
+    };
+  }
+}
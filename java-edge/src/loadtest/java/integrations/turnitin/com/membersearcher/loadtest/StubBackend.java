@@ -0,0 +1,295 @@
+package integrations.turnitin.com.membersearcher.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntPredicate;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * An in-memory stand-in for the php-backend service, serving a generated roster through the routes java-edge calls.
+ * <p>
+ * The roster has the given number of memberships and users, with ids that sort in the order they were generated.
+ * Membership {@code i} belongs to user {@code i % users} and to course {@code i % courses}. The routes follow
+ * {@code api.php}: {@code /api.php/members} with {@code limit}, {@code after}, {@code course_id} and
+ * {@code include=user}; {@code /api.php/users} with {@code limit}, {@code after} and {@code ids};
+ * {@code /api.php/users/{id}}; and an always empty {@code /api.php/changes}. Responses are JSON and carry an ETag,
+ * answered with 304 Not Modified when the client already holds it.
+ * <p>
+ * Every request waits for the given latency plus a random share of the jitter before it is answered, and the given
+ * share of requests is answered with 500 Internal Server Error instead. Requests are handled on virtual threads, so
+ * the latency does not limit the throughput of the stub.
+ */
+public final class StubBackend implements AutoCloseable {
+
+  private static final int MAX_PAGE_LIMIT = 1000;
+  private static final String MEMBERSHIP_ID = "00000000-0000-4000-8000-%012x";
+  private static final String USER_ID = "10000000-0000-4000-8000-%012x";
+  private static final String COURSE_ID = "c0000000-0000-4000-8000-%012x";
+
+  private final int members;
+  private final int users;
+  private final int courses;
+  private final Duration latency;
+  private final Duration jitter;
+  private final double errorRate;
+  private final HttpServer server;
+  private final Map<String, Rendered> rendered = new ConcurrentHashMap<>();
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+
+  /**
+   * Starts the stub.
+   *
+   * @param port      the port to listen on, 0 for any free port
+   * @param members   the number of memberships
+   * @param users     the number of users
+   * @param courses   the number of courses the memberships are spread over
+   * @param latency   the time every request waits before it is answered
+   * @param jitter    the most extra time a request waits, chosen at random
+   * @param errorRate the share of requests answered with an error
+   * @throws IOException if the port cannot be bound
+   */
+  public StubBackend(final int port, final int members, final int users, final int courses, final Duration latency,
+                     final Duration jitter, final double errorRate) throws IOException {
+    this.members = members;
+    this.users = users;
+    this.courses = courses;
+    this.latency = latency;
+    this.jitter = jitter;
+    this.errorRate = errorRate;
+    this.server = HttpServer.create(new InetSocketAddress("localhost", port), 1024);
+    server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    server.createContext("/api.php/", this::handle);
+    server.start();
+  }
+
+  /**
+   * Runs the stub until the process is stopped.
+   * Arguments are {@code key=value} pairs: {@code port} (8041), {@code members} (10000), {@code users} (5000),
+   * {@code courses} (10), {@code latency} (20ms), {@code jitter} (0ms) and {@code error-rate} (0).
+   */
+  public static void main(final String... args) throws IOException {
+    final Map<String, String> options = LoadTest.options(args);
+    final StubBackend stub = fromOptions(options, Integer.parseInt(options.getOrDefault("port", "8041")));
+    System.out.println("Stub backend listening on " + stub.url());
+  }
+
+  static StubBackend fromOptions(final Map<String, String> options, final int port) throws IOException {
+    return new StubBackend(port,
+        Integer.parseInt(options.getOrDefault("members", "10000")),
+        Integer.parseInt(options.getOrDefault("users", "5000")),
+        Integer.parseInt(options.getOrDefault("courses", "10")),
+        LoadTest.duration(options.getOrDefault("latency", "20ms")),
+        LoadTest.duration(options.getOrDefault("jitter", "0ms")),
+        Double.parseDouble(options.getOrDefault("error-rate", "0")));
+  }
+
+  /**
+   * @return the base URL of the stub, to be passed to java-edge as {@code backend.host}
+   */
+  public String url() {
+    return "http://localhost:" + server.getAddress().getPort();
+  }
+
+  public long getRequests() {
+    return requests.get();
+  }
+
+  public long getErrors() {
+    return errors.get();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+
+  private void handle(final HttpExchange exchange) throws IOException {
+    try (exchange) {
+      requests.incrementAndGet();
+      delay();
+      if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+        errors.incrementAndGet();
+        send(exchange, 500, "{\"error\":\"Injected error\"}".getBytes(StandardCharsets.UTF_8));
+        return;
+      }
+
+      final String path = exchange.getRequestURI().getPath();
+      final String rawQuery = exchange.getRequestURI().getRawQuery();
+      final Map<String, String> query = query(rawQuery);
+      final Rendered response;
+      if (path.equals("/api.php/members")) {
+        response = rendered.computeIfAbsent("members?" + rawQuery, key -> new Rendered(members(query)));
+      } else if (path.equals("/api.php/users") && query.containsKey("ids")) {
+        response = new Rendered(usersByIds(query.get("ids")));
+      } else if (path.equals("/api.php/users")) {
+        response = rendered.computeIfAbsent("users?" + rawQuery, key -> new Rendered(users(query)));
+      } else if (path.startsWith("/api.php/users/")) {
+        final int index = indexOf(USER_ID, path.substring("/api.php/users/".length()), users);
+        if (index < 0) {
+          send(exchange, 404, "{\"error\":\"User not found\"}".getBytes(StandardCharsets.UTF_8));
+          return;
+        }
+        response = new Rendered(user(new StringBuilder(), index).toString().getBytes(StandardCharsets.UTF_8));
+      } else if (path.equals("/api.php/changes")) {
+        response = new Rendered("{\"changes\":[],\"cursor\":0,\"has_more\":false,\"reset\":false}".getBytes(StandardCharsets.UTF_8));
+      } else {
+        send(exchange, 404, "{\"error\":\"Invalid resource\"}".getBytes(StandardCharsets.UTF_8));
+        return;
+      }
+
+      exchange.getResponseHeaders().set("ETag", response.etag());
+      if (response.etag().equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        exchange.sendResponseHeaders(304, -1);
+        return;
+      }
+      send(exchange, 200, response.body());
+    }
+  }
+
+  private void delay() {
+    long nanos = latency.toNanos();
+    if (!jitter.isZero()) {
+      nanos += ThreadLocalRandom.current().nextLong(jitter.toNanos() + 1);
+    }
+    if (nanos > 0) {
+      try {
+        Thread.sleep(Duration.ofNanos(nanos));
+      } catch (final InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static void send(final HttpExchange exchange, final int status, final byte[] body) throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  private byte[] members(final Map<String, String> query) {
+    final int course = query.containsKey("course_id") ? indexOf(COURSE_ID, query.get("course_id"), courses) : -1;
+    if (query.containsKey("course_id") && course < 0) {
+      return "{\"memberships\":[],\"next_cursor\":null}".getBytes(StandardCharsets.UTF_8);
+    }
+    final boolean withUsers = "user".equals(query.get("include"));
+    return page("memberships", MEMBERSHIP_ID, members, query, index -> course < 0 || index % courses == course,
+        (json, index) -> {
+          json.append("{\"id\":\"").append(String.format(MEMBERSHIP_ID, index))
+              .append("\",\"user_id\":\"").append(String.format(USER_ID, index % users))
+              .append("\",\"role\":\"").append(index % 20 == 0 ? "instructor" : "student").append('"');
+          if (withUsers) {
+            user(json.append(",\"user\":"), index % users);
+          }
+          json.append('}');
+        });
+  }
+
+  private byte[] users(final Map<String, String> query) {
+    return page("users", USER_ID, users, query, index -> true, this::user);
+  }
+
+  private byte[] usersByIds(final String ids) {
+    final StringBuilder json = new StringBuilder("{\"users\":[");
+    boolean first = true;
+    for (final String id : ids.split(",")) {
+      final int index = indexOf(USER_ID, id, users);
+      if (index >= 0) {
+        user(first ? json : json.append(','), index);
+        first = false;
+      }
+    }
+    return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private StringBuilder user(final StringBuilder json, final int index) {
+    return json.append("{\"id\":\"").append(String.format(USER_ID, index))
+        .append("\",\"name\":\"User ").append(index)
+        .append("\",\"email\":\"user").append(index).append("@example.com\"}");
+  }
+
+  /**
+   * Renders the records following the {@code after} cursor, one page of {@code limit} when a limit is given and all
+   * of them otherwise, the way {@code fetch_rows} of {@code api.php} does.
+   */
+  private byte[] page(final String key, final String idFormat, final int count, final Map<String, String> query,
+                      final IntPredicate included,
+                      final ObjIntConsumer<StringBuilder> record) {
+    final int limit = query.containsKey("limit")
+        ? Math.max(1, Math.min(MAX_PAGE_LIMIT, Integer.parseInt(query.get("limit"))))
+        : Integer.MAX_VALUE;
+    final int after = query.containsKey("after") ? indexOf(idFormat, query.get("after"), Integer.MAX_VALUE) : -1;
+
+    final StringBuilder json = new StringBuilder("{\"").append(key).append("\":[");
+    int written = 0;
+    int last = -1;
+    for (int index = after + 1; index < count && written < limit; index++) {
+      if (included.test(index)) {
+        record.accept(written > 0 ? json.append(',') : json, index);
+        written++;
+        last = index;
+      }
+    }
+    json.append(']');
+    if (limit != Integer.MAX_VALUE) {
+      json.append(",\"next_cursor\":").append(written == limit ? "\"" + String.format(idFormat, last) + "\"" : "null");
+    }
+    return json.append('}').toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return the index the id was generated from with the format, or -1 when it was not generated from it
+   */
+  private static int indexOf(final String idFormat, final String id, final int count) {
+    final String prefix = idFormat.substring(0, idFormat.indexOf('%'));
+    if (id == null || id.length() != 36 || !id.startsWith(prefix)) {
+      return -1;
+    }
+    try {
+      final long index = Long.parseLong(id.substring(prefix.length()), 16);
+      return index < count ? (int) index : -1;
+    } catch (final NumberFormatException ex) {
+      return -1;
+    }
+  }
+
+  private static Map<String, String> query(final String rawQuery) {
+    final Map<String, String> query = new HashMap<>();
+    if (rawQuery != null) {
+      for (final String parameter : rawQuery.split("&")) {
+        final int separator = parameter.indexOf('=');
+        if (separator > 0) {
+          query.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+              URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+        }
+      }
+    }
+    return query;
+  }
+
+  /**
+   * A response body with its ETag, computed once.
+   */
+  private record Rendered(byte[] body, String etag) {
+
+    Rendered(final byte[] body) {
+      this(body, "\"" + Integer.toHexString(Arrays.hashCode(body)) + "\"");
+    }
+  }
+}
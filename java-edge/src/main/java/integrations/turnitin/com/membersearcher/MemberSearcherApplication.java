@@ -1,9 +1,14 @@
 package integrations.turnitin.com.membersearcher;
 
+import integrations.turnitin.com.membersearcher.config.MembershipProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
+@EnableConfigurationProperties(MembershipProperties.class)
 public class MemberSearcherApplication {
 
 	public static void main(final String... args) {
@@ -0,0 +1,65 @@
+package integrations.turnitin.com.membersearcher.cache;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The serialized form of a snapshot, as JSON and as gzip-compressed JSON, ready to be written out as a response body.
+ * <p>
+ * A snapshot is serialized and compressed once, when it is first served, so the requests that follow write these
+ * bytes as they are, without serializing or compressing anything. As this work is shared by every request for the
+ * snapshot, it is compressed at the best compression level. The arrays must not be modified.
+ */
+public final class SerializedSnapshot {
+
+  private final byte[] json;
+  private final byte[] gzip;
+
+  private SerializedSnapshot(final byte[] json, final byte[] gzip) {
+    this.json = json;
+    this.gzip = gzip;
+  }
+
+  /**
+   * Serializes and compresses a value.
+   *
+   * @param writer the writer serializing the value to JSON
+   * @param value  the value, usually a snapshot
+   * @return the serialized value
+   */
+  public static SerializedSnapshot of(final ObjectWriter writer, final Object value) {
+    try {
+      final byte[] json = writer.writeValueAsBytes(value);
+      final ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 64);
+      try (GZIPOutputStream out = new GZIPOutputStream(compressed) {
+        {
+          def.setLevel(Deflater.BEST_COMPRESSION);
+        }
+      }) {
+        out.write(json);
+      }
+      return new SerializedSnapshot(json, compressed.toByteArray());
+    } catch (final IOException ex) {
+      throw new UncheckedIOException("Could not serialize the snapshot", ex);
+    }
+  }
+
+  /**
+   * @return the value as JSON
+   */
+  public byte[] getJson() {
+    return json;
+  }
+
+  /**
+   * @return the value as gzip-compressed JSON
+   */
+  public byte[] getGzip() {
+    return gzip;
+  }
+}
@@ -0,0 +1,44 @@
+package integrations.turnitin.com.membersearcher.cache;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * An immutable pairing of a cached value with the instant it was loaded.
+ *
+ * @param <T> the type of the cached value
+ */
+public final class Snapshot<T> {
+
+  private final T value;
+  private final Instant loadedAt;
+
+  /**
+   * Constructor.
+   * @param value    the loaded value
+   * @param loadedAt the instant the value was loaded
+   */
+  public Snapshot(final T value, final Instant loadedAt) {
+    this.value = value;
+    this.loadedAt = loadedAt;
+  }
+
+  public T getValue() {
+    return value;
+  }
+
+  public Instant getLoadedAt() {
+    return loadedAt;
+  }
+
+  /**
+   * Checks whether this snapshot has outlived the given time to live.
+   *
+   * @param ttl the time to live of a snapshot
+   * @param now the current instant
+   * @return true if the snapshot was loaded more than {@code ttl} before {@code now}
+   */
+  public boolean isOlderThan(final Duration ttl, final Instant now) {
+    return loadedAt.plus(ttl).isBefore(now);
+  }
+}
@@ -0,0 +1,163 @@
+package integrations.turnitin.com.membersearcher.cache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Caches the result of an asynchronous loader as a single {@link Snapshot}.
+ * <p>
+ * A snapshot is served as-is until it is older than the configured TTL. Once it expires it is
+ * still served, but a background refresh is started to replace it (stale-while-revalidate), so
+ * callers only wait on the loader when no snapshot has been loaded yet. At most one load is in
+ * flight at any time; concurrent callers share it. A failed refresh keeps the previous snapshot.
+ *
+ * @param <T> the type of the cached value
+ */
+public class SnapshotCache<T> {
+
+  private static final Logger log = Logger.getLogger(SnapshotCache.class.getSimpleName());
+
+  private final Supplier<CompletableFuture<T>> loader;
+  private final Duration ttl;
+  private final Clock clock;
+
+  private final AtomicReference<Snapshot<T>> current = new AtomicReference<>();
+  private final AtomicReference<CompletableFuture<T>> pendingLoad = new AtomicReference<>();
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong refreshes = new AtomicLong();
+  private final AtomicLong refreshFailures = new AtomicLong();
+
+  /**
+   * Constructor.
+   * @param loader the loader producing a fresh value
+   * @param ttl    how long a loaded snapshot is served before it is refreshed
+   */
+  public SnapshotCache(final Supplier<CompletableFuture<T>> loader, final Duration ttl) {
+    this(loader, ttl, Clock.systemUTC());
+  }
+
+  /**
+   * Constructor.
+   * @param loader the loader producing a fresh value
+   * @param ttl    how long a loaded snapshot is served before it is refreshed
+   * @param clock  the clock used to age snapshots
+   */
+  public SnapshotCache(final Supplier<CompletableFuture<T>> loader, final Duration ttl, final Clock clock) {
+    this.loader = loader;
+    this.ttl = ttl;
+    this.clock = clock;
+  }
+
+  /**
+   * Returns the cached value, loading it first if no snapshot exists yet.
+   * If the current snapshot has expired it is returned immediately and a refresh is started in the background.
+   *
+   * @return A CompletableFuture that resolves to the cached value.
+   */
+  public CompletableFuture<T> get() {
+    final Snapshot<T> snapshot = current.get();
+    if (snapshot == null) {
+      misses.incrementAndGet();
+      return load();
+    }
+
+    hits.incrementAndGet();
+    if (snapshot.isOlderThan(ttl, clock.instant())) {
+      load();
+    }
+    return CompletableFuture.completedFuture(snapshot.getValue());
+  }
+
+  /**
+   * Starts a refresh regardless of the age of the current snapshot, or joins the one already in flight.
+   *
+   * @return A CompletableFuture that resolves to the freshly loaded value.
+   */
+  public CompletableFuture<T> refresh() {
+    return load();
+  }
+
+  /**
+   * Installs a value loaded elsewhere, such as from a file saved by a previous run, unless a snapshot has
+   * already been loaded. The value is aged from the given instant, so a seed older than the TTL is served
+   * once and refreshed in the background like any expired snapshot.
+   *
+   * @param value    the value to serve
+   * @param loadedAt the instant the value was originally loaded
+   * @return true if the value was installed, false if a snapshot was already loaded
+   */
+  public boolean seed(final T value, final Instant loadedAt) {
+    return current.compareAndSet(null, new Snapshot<>(value, loadedAt));
+  }
+
+  /**
+   * @return the current snapshot, if one has been loaded
+   */
+  public Optional<Snapshot<T>> getSnapshot() {
+    return Optional.ofNullable(current.get());
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getRefreshes() {
+    return refreshes.get();
+  }
+
+  public long getRefreshFailures() {
+    return refreshFailures.get();
+  }
+
+  /**
+   * Runs the loader unless a load is already in flight, in which case the pending load is returned.
+   * The snapshot is only replaced when the load succeeds.
+   *
+   * @return A CompletableFuture that resolves to the loaded value.
+   */
+  private CompletableFuture<T> load() {
+    final CompletableFuture<T> created = new CompletableFuture<>();
+    final CompletableFuture<T> pending = pendingLoad.compareAndExchange(null, created);
+    if (pending != null) {
+      return pending;
+    }
+
+    refreshes.incrementAndGet();
+    CompletableFuture<T> loading;
+    try {
+      loading = loader.get();
+    } catch (final RuntimeException ex) {
+      loading = CompletableFuture.failedFuture(ex);
+    }
+
+    loading.whenComplete((value, ex) -> {
+      if (ex == null) {
+        current.set(new Snapshot<>(value, clock.instant()));
+      } else {
+        refreshFailures.incrementAndGet();
+        log.warning("Snapshot refresh failed: " + ex.getMessage());
+      }
+      pendingLoad.set(null);
+
+      if (ex == null) {
+        created.complete(value);
+      } else {
+        created.completeExceptionally(ex);
+      }
+    });
+    return created;
+  }
+}
@@ -0,0 +1,220 @@
+package integrations.turnitin.com.membersearcher.client;
+
+import integrations.turnitin.com.membersearcher.exception.ClientRequestException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits the number of concurrent requests to the php-backend service, adapting the limit to how fast it answers.
+ * <p>
+ * The limit follows an additive-increase/multiplicative-decrease rule: it grows by one for each request answered
+ * within the RTT threshold while at least half the limit is in use, and shrinks by a tenth for each request that
+ * fails, times out or takes longer than the threshold. A slowing backend thereby gets fewer concurrent requests
+ * rather than an ever growing backlog. Requests beyond the limit wait in a short queue, for at most
+ * {@code backend.limiter.max-wait}, and are rejected straight away once the queue is full.
+ * <p>
+ * The limit, the requests in flight and the queued requests are exposed as gauges, and the rejected requests counted.
+ */
+@Component
+@Profile("!reactive")
+public class AdaptiveConcurrencyLimiter {
+
+  private static final int MIN_LIMIT = 2;
+  private static final double BACKOFF_RATIO = 0.9;
+
+  private final boolean enabled;
+  private final int maxLimit;
+  private final int maxQueue;
+  private final Duration maxWait;
+  private final long rttThresholdNanos;
+  private final Counter rejections;
+  private final Deque<CompletableFuture<Permit>> queue = new ArrayDeque<>();
+  private double limit;
+  private int inFlight;
+
+  /**
+   * Constructor.
+   * @param enabled       whether to limit requests at all; when disabled every request is let through
+   * @param initialLimit  the limit until the first requests have been answered
+   * @param maxLimit      the largest the limit may grow to
+   * @param maxQueue      the largest number of requests waiting for the limit, beyond which requests are rejected
+   * @param maxWait       how long a request may wait for the limit before it is rejected
+   * @param rttThreshold  the time to answer a request beyond which the backend is deemed overloaded
+   * @param meterRegistry the registry receiving the limiter metrics
+   */
+  public AdaptiveConcurrencyLimiter(@Value("${backend.limiter.enabled:true}") final boolean enabled,
+                                    @Value("${backend.limiter.initial-limit:20}") final int initialLimit,
+                                    @Value("${backend.limiter.max-limit:200}") final int maxLimit,
+                                    @Value("${backend.limiter.max-queue:100}") final int maxQueue,
+                                    @Value("${backend.limiter.max-wait:1s}") final Duration maxWait,
+                                    @Value("${backend.limiter.rtt-threshold:1s}") final Duration rttThreshold,
+                                    final MeterRegistry meterRegistry) {
+    this.enabled = enabled;
+    this.maxLimit = Math.max(MIN_LIMIT, maxLimit);
+    this.maxQueue = maxQueue;
+    this.maxWait = maxWait;
+    this.rttThresholdNanos = rttThreshold.toNanos();
+    this.limit = Math.min(this.maxLimit, Math.max(MIN_LIMIT, initialLimit));
+
+    Gauge.builder("backend.limiter.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+        .description("Concurrent backend requests currently allowed")
+        .register(meterRegistry);
+    Gauge.builder("backend.limiter.in-flight", this, AdaptiveConcurrencyLimiter::getInFlight)
+        .description("Backend requests in flight")
+        .register(meterRegistry);
+    Gauge.builder("backend.limiter.queued", this, AdaptiveConcurrencyLimiter::getQueued)
+        .description("Backend requests waiting for the limit")
+        .register(meterRegistry);
+    this.rejections = Counter.builder("backend.limiter.rejections")
+        .description("Backend requests rejected because the limit and its queue were full, or the wait was too long")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Acquires a permit to send a request, waiting in the queue if the limit is reached.
+   * The permit must be released once the request has been answered and its response read.
+   *
+   * @return A CompletableFuture that resolves to the permit, or fails with a ClientRequestException if the
+   *         request is rejected.
+   */
+  public CompletableFuture<Permit> acquire() {
+    if (!enabled) {
+      return CompletableFuture.completedFuture(new Permit(false));
+    }
+    final CompletableFuture<Permit> waiter;
+    synchronized (this) {
+      if (inFlight < (int) limit) {
+        inFlight++;
+        return CompletableFuture.completedFuture(new Permit(true));
+      }
+      if (queue.size() >= maxQueue) {
+        waiter = null;
+      } else {
+        waiter = new CompletableFuture<>();
+        queue.add(waiter);
+      }
+    }
+    if (waiter == null) {
+      rejections.increment();
+      return CompletableFuture.failedFuture(new ClientRequestException("Too many concurrent backend requests"));
+    }
+    CompletableFuture.delayedExecutor(maxWait.toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+      final boolean expired;
+      synchronized (this) {
+        expired = queue.remove(waiter);
+      }
+      if (expired && waiter.completeExceptionally(new ClientRequestException("Timed out waiting for a backend request slot"))) {
+        rejections.increment();
+      }
+    });
+    return waiter;
+  }
+
+  /**
+   * @return the number of concurrent requests currently allowed
+   */
+  public synchronized int getLimit() {
+    return (int) limit;
+  }
+
+  /**
+   * @return the number of requests holding a permit
+   */
+  public synchronized int getInFlight() {
+    return inFlight;
+  }
+
+  /**
+   * @return the number of requests waiting for a permit
+   */
+  public synchronized int getQueued() {
+    return queue.size();
+  }
+
+  private synchronized void adjust(final boolean dropped, final long rttNanos) {
+    if (dropped || rttNanos > rttThresholdNanos) {
+      limit = Math.max(MIN_LIMIT, limit * BACKOFF_RATIO);
+    } else if (inFlight * 2 >= limit) {
+      limit = Math.min(maxLimit, limit + 1);
+    }
+  }
+
+  /**
+   * Frees the slot of a released permit and hands the freed slots to the queued requests, in order.
+   */
+  private void releaseSlot() {
+    final List<CompletableFuture<Permit>> granted = new ArrayList<>();
+    synchronized (this) {
+      inFlight--;
+      while (inFlight < (int) limit && !queue.isEmpty()) {
+        final CompletableFuture<Permit> waiter = queue.poll();
+        if (!waiter.isDone()) {
+          inFlight++;
+          granted.add(waiter);
+        }
+      }
+    }
+    granted.forEach(waiter -> {
+      final Permit permit = new Permit(true);
+      if (!waiter.complete(permit)) {
+        permit.release();
+      }
+    });
+  }
+
+  /**
+   * The permission to send one request, released exactly once.
+   */
+  public final class Permit {
+
+    private final AtomicBoolean held;
+
+    private Permit(final boolean held) {
+      this.held = new AtomicBoolean(held);
+    }
+
+    /**
+     * Releases the permit of a request answered in the given time.
+     *
+     * @param rttNanos the time from sending the request to reading its response, in nanoseconds
+     */
+    public void succeeded(final long rttNanos) {
+      if (held.getAndSet(false)) {
+        adjust(false, rttNanos);
+        releaseSlot();
+      }
+    }
+
+    /**
+     * Releases the permit of a request that failed or timed out.
+     */
+    public void dropped() {
+      if (held.getAndSet(false)) {
+        adjust(true, 0);
+        releaseSlot();
+      }
+    }
+
+    /**
+     * Releases the permit without adjusting the limit.
+     */
+    void release() {
+      if (held.getAndSet(false)) {
+        releaseSlot();
+      }
+    }
+  }
+}
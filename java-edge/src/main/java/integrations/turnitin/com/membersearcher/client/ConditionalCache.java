@@ -0,0 +1,69 @@
+package integrations.turnitin.com.membersearcher.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * The last parsed response of each backend URL, with the validators needed to revalidate it.
+ * <p>
+ * A request for a cached URL carries {@code If-None-Match} and {@code If-Modified-Since}; when the backend
+ * answers 304 Not Modified the cached value is reused without receiving or parsing a body. The cache is bounded by
+ * the number of records its values hold, {@code backend.conditional-cache.max-records}, rather than by the number
+ * of URLs, so that keeping pages around for revalidation never costs more than that many records on top of the
+ * snapshots built from them. Pages beyond the bound are fetched in full again. A cached value is handed to every
+ * caller whose request is answered with 304 Not Modified, so it must not be modified.
+ */
+class ConditionalCache {
+
+  /**
+   * A cached response.
+   *
+   * @param etag         the entity tag of the response, or null
+   * @param lastModified the Last-Modified date of the response, or null
+   * @param value        the value parsed from the response body
+   * @param records      the number of records the value holds
+   */
+  record Entry(String etag, String lastModified, Object value, int records) {
+  }
+
+  private final Cache<String, Entry> entries;
+
+  /**
+   * Constructor.
+   * @param maxRecords the largest number of records held by the cached values together
+   */
+  ConditionalCache(final long maxRecords) {
+    this.entries = Caffeine.newBuilder()
+        .maximumWeight(maxRecords)
+        .weigher((String url, Entry entry) -> Math.max(1, entry.records()))
+        .executor(Runnable::run)
+        .build();
+  }
+
+  /**
+   * @param url       the URL of the request
+   * @param valueType the type of value the caller parses the response into
+   * @return the cached response of the URL, or null if there is none of that type
+   */
+  Entry get(final String url, final Class<?> valueType) {
+    final Entry entry = entries.getIfPresent(url);
+    return entry != null && valueType.isInstance(entry.value()) ? entry : null;
+  }
+
+  /**
+   * Caches a response, if it carries a validator to revalidate it with.
+   *
+   * @param url          the URL of the request
+   * @param etag         the ETag header of the response, or null
+   * @param lastModified the Last-Modified header of the response, or null
+   * @param value        the value parsed from the response body
+   * @param records      the number of records the value holds
+   */
+  void put(final String url, final String etag, final String lastModified, final Object value, final int records) {
+    if (etag == null && lastModified == null) {
+      entries.invalidate(url);
+    } else {
+      entries.put(url, new Entry(etag, lastModified, value, records));
+    }
+  }
+}
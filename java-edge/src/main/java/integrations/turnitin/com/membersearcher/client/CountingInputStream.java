@@ -0,0 +1,65 @@
+package integrations.turnitin.com.membersearcher.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+
+/**
+ * Counts the bytes read from a stream and reports the total once, when the stream is closed.
+ */
+class CountingInputStream extends FilterInputStream {
+
+  private final LongConsumer onClose;
+  private long count;
+  private boolean closed;
+
+  /**
+   * Constructor.
+   * @param in      the stream to count
+   * @param onClose receives the number of bytes read when the stream is closed
+   */
+  CountingInputStream(final InputStream in, final LongConsumer onClose) {
+    super(in);
+    this.onClose = onClose;
+  }
+
+  @Override
+  public int read() throws IOException {
+    final int read = super.read();
+    if (read >= 0) {
+      count++;
+    }
+    return read;
+  }
+
+  @Override
+  public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+    final int read = super.read(buffer, offset, length);
+    if (read > 0) {
+      count += read;
+    }
+    return read;
+  }
+
+  @Override
+  public long skip(final long n) throws IOException {
+    final long skipped = super.skip(n);
+    count += skipped;
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      onClose.accept(count);
+    }
+    super.close();
+  }
+}
@@ -0,0 +1,62 @@
+package integrations.turnitin.com.membersearcher.client;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * Reads the records of a backend list response one at a time with a Jackson streaming parser.
+ * <p>
+ * Backend list responses are objects holding an array of records under a resource key, optionally
+ * followed by a {@code next_cursor}. Only one record is materialized at a time, and the records are
+ * handed to the consumer while the rest of the body is still being read. The parser is created by the given
+ * mapper, so CBOR responses are read the same way with a CBOR mapper.
+ */
+public final class JsonRecordReader {
+
+  private static final String NEXT_CURSOR = "next_cursor";
+
+  private JsonRecordReader() {
+  }
+
+  /**
+   * Reads a list response, passing every record of the given array to the consumer in order.
+   *
+   * @param objectMapper The object mapper used to bind each record.
+   * @param body         The response body. It is closed once read.
+   * @param arrayField   The name of the field holding the records, e.g. "memberships".
+   * @param recordType   The type of a record.
+   * @param consumer     Receives each record as soon as it has been parsed.
+   * @param <T>          The type of a record.
+   * @return The next cursor of the page, or null if there is none.
+   * @throws IOException if the body cannot be read or is not a list response.
+   */
+  public static <T> String read(final ObjectMapper objectMapper, final InputStream body, final String arrayField,
+                                final Class<T> recordType, final Consumer<? super T> consumer) throws IOException {
+    try (JsonParser parser = objectMapper.createParser(body)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Expected a JSON object holding '" + arrayField + "'");
+      }
+
+      String nextCursor = null;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final String field = parser.getCurrentName();
+        final JsonToken value = parser.nextToken();
+        if (arrayField.equals(field) && value == JsonToken.START_ARRAY) {
+          while (parser.nextToken() != JsonToken.END_ARRAY) {
+            consumer.accept(objectMapper.readValue(parser, recordType));
+          }
+        } else if (NEXT_CURSOR.equals(field)) {
+          nextCursor = value == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+        } else {
+          parser.skipChildren();
+        }
+      }
+      return nextCursor;
+    }
+  }
+}
@@ -1,72 +1,455 @@
 package integrations.turnitin.com.membersearcher.client;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import integrations.turnitin.com.membersearcher.exception.ClientRequestException;
+import integrations.turnitin.com.membersearcher.exception.NotFoundException;
+import integrations.turnitin.com.membersearcher.model.Membership;
 import integrations.turnitin.com.membersearcher.model.MembershipList;
+import integrations.turnitin.com.membersearcher.model.MembershipPage;
+import integrations.turnitin.com.membersearcher.model.RosterChange;
+import integrations.turnitin.com.membersearcher.model.RosterChangePage;
 import integrations.turnitin.com.membersearcher.model.User;
 import integrations.turnitin.com.membersearcher.model.UserList;
+import integrations.turnitin.com.membersearcher.model.UserPage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
+@Profile("!reactive")
 public class MembershipBackendClient {
 
   @Value("${backend.host:http://localhost:8041}")
   private String backendHost;
 
+  @Value("${backend.page-size:1000}")
+  private int pageSize;
+
+  @Value("${backend.users.batch-size:100}")
+  private int userBatchSize;
+
+  @Value("${backend.users.max-concurrent-batches:8}")
+  private int maxConcurrentUserBatches;
+
+  @Value("${backend.cbor.enabled:true}")
+  private boolean cborEnabled;
+
+  @Value("${backend.request-timeout:10s}")
+  private Duration requestTimeout;
+
+  private static final String ALL = "all";
+  private static final String JOINED = "joined:";
+  private static final String ACCEPT_CBOR_OR_JSON = MediaType.APPLICATION_CBOR_VALUE + ", " + MediaType.APPLICATION_JSON_VALUE + ";q=0.9";
+
   private final HttpClient httpClient;
   private final ObjectMapper objectMapper;
+  private final ObjectMapper cborMapper;
+  private final MeterRegistry meterRegistry;
+  private final RequestHedger hedger;
+  private final AdaptiveConcurrencyLimiter limiter;
+
+  private final SingleFlight<String, MembershipList> membershipsFlight = new SingleFlight<>();
+  private final SingleFlight<String, UserList> usersFlight = new SingleFlight<>();
+  private final SingleFlight<String, User> userFlight = new SingleFlight<>();
+  private final ConditionalCache conditionalCache;
+  private final AtomicLong modifiedResponses = new AtomicLong();
 
   /**
    * Constructs a new instance of the MembershipBackendClient.
-   * @param objectMapper The object mapper used for serializing and deserializing JSON data.
+   * @param objectMapper  The object mapper used for serializing and deserializing JSON data.
+   *                      Responses the backend sends as CBOR are read with a CBOR mapper configured alike.
+   * @param meterRegistry The registry receiving the backend request metrics.
+   * @param limiter       Limits the number of concurrent requests to the backend.
+   * @param virtualThreads Whether the HTTP client runs its work on virtual threads, one per task, instead of
+   *                       its default cached pool of platform threads. Follows the Spring Boot virtual threads
+   *                       switch, which also moves request handling onto virtual threads.
+   * @param hedge          Whether to send a duplicate of a request that is slower than most, see {@link RequestHedger}.
+   * @param hedgePercentile The share of recent requests to an endpoint answered before a request to it is hedged.
+   * @param conditionalCacheMaxRecords The largest number of records kept from backend responses to answer their
+   *                       revalidation, see {@link ConditionalCache}.
    */
   @Autowired
-  public MembershipBackendClient(final ObjectMapper objectMapper) {
-    this.httpClient = HttpClient.newBuilder()
+  public MembershipBackendClient(final ObjectMapper objectMapper, final MeterRegistry meterRegistry,
+                                 final AdaptiveConcurrencyLimiter limiter,
+                                 @Value("${spring.threads.virtual.enabled:false}") final boolean virtualThreads,
+                                 @Value("${backend.hedge.enabled:false}") final boolean hedge,
+                                 @Value("${backend.hedge.percentile:0.95}") final double hedgePercentile,
+                                 @Value("${backend.conditional-cache.max-records:200000}") final long conditionalCacheMaxRecords) {
+    final HttpClient.Builder builder = HttpClient.newBuilder()
         .connectTimeout(Duration.ofSeconds(30))
-        .followRedirects(HttpClient.Redirect.NORMAL)
-        .build();
+        .followRedirects(HttpClient.Redirect.NORMAL);
+    if (virtualThreads) {
+      builder.executor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+    this.httpClient = builder.build();
     this.objectMapper = objectMapper;
+    this.cborMapper = CBORMapper.builder()
+        .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+        .build();
+    this.meterRegistry = meterRegistry;
+    this.hedger = hedge ? new RequestHedger(hedgePercentile, meterRegistry) : null;
+    this.limiter = limiter;
+    this.conditionalCache = new ConditionalCache(conditionalCacheMaxRecords);
+
+    FunctionCounter.builder("backend.requests.coalesced", this, MembershipBackendClient::getCoalescedRequests)
+        .description("Backend fetches that shared a request already in flight")
+        .register(meterRegistry);
   }
 
   /**
    * Fetches a list of memberships from the backend API.
+   * The memberships are requested page by page, so no single backend request has to load the whole table.
+   * Concurrent callers share the fetch already in flight rather than starting their own.
    * @return A CompletableFuture that resolves to a MembershipList object containing the fetched memberships.
    */
   public CompletableFuture<MembershipList> fetchMemberships() {
-    return makeRequest("GET", backendHost + "/api.php/members", null, MembershipList.class);
+    return membershipsFlight.execute(ALL, () -> fetchRemainingPages(after -> fetchMembershipsPage(after, pageSize),
+        MembershipPage::getMemberships, MembershipPage::getNextCursor, null, new ArrayList<Membership>())
+        .thenApply(memberships -> new MembershipList().setMemberships(memberships)));
+  }
+
+  /**
+   * Fetches one page of memberships, ordered by id, from the backend API.
+   * The page is revalidated with the backend if it was fetched before, and reused if it has not changed.
+   *
+   * @param after The id of the last membership of the previous page, or null for the first page.
+   * @param limit The maximum number of memberships in the page.
+   * @return A CompletableFuture that resolves to a MembershipPage object containing the fetched memberships.
+   */
+  public CompletableFuture<MembershipPage> fetchMembershipsPage(final String after, final int limit) {
+    return makeConditionalRequest(pageUrl("/api.php/members", after, limit), MembershipPage.class);
+  }
+
+  /**
+   * Fetches the memberships of one course from the backend API, page by page.
+   * Concurrent callers asking for the same course share the fetch already in flight.
+   *
+   * @param courseId The ID of the course.
+   * @return A CompletableFuture that resolves to a MembershipList object containing the memberships of the course.
+   */
+  public CompletableFuture<MembershipList> fetchCourseMemberships(final String courseId) {
+    return membershipsFlight.execute(courseId, () -> fetchRemainingPages(after -> fetchCourseMembershipsPage(courseId, after, pageSize),
+        MembershipPage::getMemberships, MembershipPage::getNextCursor, null, new ArrayList<Membership>())
+        .thenApply(memberships -> new MembershipList().setMemberships(memberships)));
+  }
+
+  /**
+   * Fetches one page of the memberships of a course, ordered by id, from the backend API.
+   * The page is revalidated with the backend if it was fetched before, and reused if it has not changed.
+   *
+   * @param courseId The ID of the course.
+   * @param after    The id of the last membership of the previous page, or null for the first page.
+   * @param limit    The maximum number of memberships in the page.
+   * @return A CompletableFuture that resolves to a MembershipPage object containing the fetched memberships.
+   */
+  public CompletableFuture<MembershipPage> fetchCourseMembershipsPage(final String courseId, final String after, final int limit) {
+    final String url = pageUrl("/api.php/members", after, limit) + "&course_id=" + URLEncoder.encode(courseId, StandardCharsets.UTF_8);
+    return makeConditionalRequest(url, MembershipPage.class);
+  }
+
+  /**
+   * Fetches every membership with its user from the backend API, which joins them in the database.
+   * One request per page replaces the separate membership and user requests, and the users need no join on the edge.
+   * Concurrent callers share the fetch already in flight rather than starting their own.
+   *
+   * @return A CompletableFuture that resolves to a MembershipList object containing the memberships with their users.
+   */
+  public CompletableFuture<MembershipList> fetchMembershipsWithUsers() {
+    return membershipsFlight.execute(JOINED, () -> fetchRemainingPages(after -> makeConditionalRequest(
+            pageUrl("/api.php/members", after, pageSize) + "&include=user", MembershipPage.class),
+        MembershipPage::getMemberships, MembershipPage::getNextCursor, null, new ArrayList<Membership>())
+        .thenApply(memberships -> new MembershipList().setMemberships(memberships)));
+  }
+
+  /**
+   * Fetches the memberships of one course with their users from the backend API, which joins them in the database.
+   * Concurrent callers asking for the same course share the fetch already in flight.
+   *
+   * @param courseId The ID of the course.
+   * @return A CompletableFuture that resolves to a MembershipList object containing the memberships with their users.
+   */
+  public CompletableFuture<MembershipList> fetchCourseMembershipsWithUsers(final String courseId) {
+    final String courseFilter = "&course_id=" + URLEncoder.encode(courseId, StandardCharsets.UTF_8) + "&include=user";
+    return membershipsFlight.execute(JOINED + courseId, () -> fetchRemainingPages(after -> makeConditionalRequest(
+            pageUrl("/api.php/members", after, pageSize) + courseFilter, MembershipPage.class),
+        MembershipPage::getMemberships, MembershipPage::getNextCursor, null, new ArrayList<Membership>())
+        .thenApply(memberships -> new MembershipList().setMemberships(memberships)));
+  }
+
+  /**
+   * Streams every membership from the backend API, page by page, without materializing a MembershipList.
+   * Each membership is passed to the consumer as soon as it has been parsed, while the rest of the page is still
+   * being received. The consumer is called sequentially, in id order. Pages that have not changed since they were
+   * last streamed are replayed from memory instead.
+   *
+   * @param consumer Receives each membership.
+   * @return A CompletableFuture that completes once the last page has been consumed.
+   */
+  public CompletableFuture<Void> streamMemberships(final Consumer<? super Membership> consumer) {
+    return streamRemainingPages("/api.php/members", "memberships", Membership.class, consumer, null);
   }
 
   /**
    * Fetches a user from the backend API by their user ID.
+   * Concurrent callers asking for the same user share the request already in flight.
    *
    * @param userId The ID of the user to fetch.
-   * @return A CompletableFuture that resolves to a User object representing the fetched user.
+   * @return A CompletableFuture that resolves to a User object representing the fetched user, or fails with a
+   *     {@link NotFoundException} when the backend knows no such user.
    */
   public CompletableFuture<User> fetchUser(final String userId) {
-    return makeRequest("GET", backendHost + "/api.php/users/" + userId, null, User.class);
+    return userFlight.execute(userId, () -> makeRequest("GET", backendHost + "/api.php/users/" + userId, null, User.class));
   }
 
   /**
    * Fetches a list of users from the backend API.
+   * The users are requested page by page, so no single backend request has to load the whole table.
+   * Concurrent callers share the fetch already in flight rather than starting their own.
    *
    * @return A CompletableFuture that resolves to a UserList object containing the fetched users.
    */
   public CompletableFuture<UserList> fetchUsers() {
-    return makeRequest("GET", backendHost + "/api.php/users", null, UserList.class);
+    return usersFlight.execute(ALL, () -> fetchRemainingPages(after -> fetchUsersPage(after, pageSize),
+        UserPage::getUsers, UserPage::getNextCursor, null, new ArrayList<User>())
+        .thenApply(users -> new UserList().setUsers(users)));
+  }
+
+  /**
+   * Fetches the users with the given IDs from the backend API.
+   * The IDs are split into chunks of at most {@code backend.users.batch-size}. At most
+   * {@code backend.users.max-concurrent-batches} chunks are requested at a time, each lane of requests starting its
+   * next chunk once its previous one is answered, so that a large lookup stays well within the
+   * {@link AdaptiveConcurrencyLimiter} and its queue instead of having its own chunks rejected.
+   * Like pages, chunks fetched before are revalidated with the backend and reused if they have not changed.
+   * Unknown IDs are left out of the result.
+   *
+   * @param userIds The IDs of the users to fetch.
+   * @return A CompletableFuture that resolves to a UserList object containing the fetched users.
+   */
+  public CompletableFuture<UserList> fetchUsersByIds(final Collection<String> userIds) {
+    final List<String> ids = new ArrayList<>(new LinkedHashSet<>(userIds));
+    final List<String> urls = new ArrayList<>();
+    for (int from = 0; from < ids.size(); from += userBatchSize) {
+      final List<String> chunk = ids.subList(from, Math.min(from + userBatchSize, ids.size()));
+      urls.add(backendHost + "/api.php/users?ids=" + URLEncoder.encode(String.join(",", chunk), StandardCharsets.UTF_8));
+    }
+
+    final UserList[] chunks = new UserList[urls.size()];
+    final int lanes = Math.max(1, Math.min(maxConcurrentUserBatches, urls.size()));
+    final List<CompletableFuture<Void>> fetched = new ArrayList<>();
+    for (int lane = 0; lane < lanes; lane++) {
+      fetched.add(fetchUserChunks(urls, lane, lanes, chunks));
+    }
+    return CompletableFuture.allOf(fetched.toArray(CompletableFuture[]::new))
+        .thenApply(done -> new UserList().setUsers(Arrays.stream(chunks)
+            .flatMap(chunk -> chunk.getUsers().stream())
+            .collect(Collectors.toList())));
+  }
+
+  /**
+   * Fetches the changes made to memberships and users since the given cursor from the change feed of the backend API,
+   * following its pages to the end. Without a cursor no changes are fetched, only the cursor to start following the
+   * feed from. A page answered with {@code reset} ends the fetch: the feed no longer holds every change since the
+   * cursor, and the caller must fetch everything again.
+   *
+   * @param since The cursor of the last change already applied, or null to start following the feed.
+   * @return A CompletableFuture that resolves to the changes, in the order they were made, and the cursor to continue from.
+   */
+  public CompletableFuture<RosterChangePage> fetchChanges(final Long since) {
+    return fetchRemainingChanges(since, new ArrayList<>());
+  }
+
+  /**
+   * Counts the successful backend responses that carried a body, as opposed to 304 Not Modified.
+   * Data fetched while this count stays the same was entirely revalidated, so it is unchanged.
+   *
+   * @return the number of successful responses with a body received so far.
+   */
+  public long getModifiedResponses() {
+    return modifiedResponses.get();
+  }
+
+  /**
+   * @return the number of fetches that shared a backend request already in flight instead of sending their own.
+   */
+  public long getCoalescedRequests() {
+    return membershipsFlight.getCoalesced() + usersFlight.getCoalesced() + userFlight.getCoalesced();
+  }
+
+  /**
+   * Fetches one page of users, ordered by id, from the backend API.
+   * The page is revalidated with the backend if it was fetched before, and reused if it has not changed.
+   *
+   * @param after The id of the last user of the previous page, or null for the first page.
+   * @param limit The maximum number of users in the page.
+   * @return A CompletableFuture that resolves to a UserPage object containing the fetched users.
+   */
+  public CompletableFuture<UserPage> fetchUsersPage(final String after, final int limit) {
+    return makeConditionalRequest(pageUrl("/api.php/users", after, limit), UserPage.class);
+  }
+
+  /**
+   * Streams every user from the backend API, page by page, without materializing a UserList.
+   * Each user is passed to the consumer as soon as it has been parsed, while the rest of the page is still
+   * being received. The consumer is called sequentially, in id order. Pages that have not changed since they were
+   * last streamed are replayed from memory instead.
+   *
+   * @param consumer Receives each user.
+   * @return A CompletableFuture that completes once the last page has been consumed.
+   */
+  public CompletableFuture<Void> streamUsers(final Consumer<? super User> consumer) {
+    return streamRemainingPages("/api.php/users", "users", User.class, consumer, null);
+  }
+
+  /**
+   * Follows the cursors of a paginated backend resource until the last page, collecting every item.
+   *
+   * @param fetchPage  Fetches the page following the given cursor.
+   * @param items      Extracts the items of a page.
+   * @param nextCursor Extracts the cursor of the following page, null on the last page.
+   * @param after      The cursor of the page to fetch next.
+   * @param collected  The items collected from the previous pages.
+   * @param <P>        The type of a page.
+   * @param <T>        The type of the items of a page.
+   * @return A CompletableFuture that resolves to the items of every page, in order.
+   */
+  private <P, T> CompletableFuture<List<T>> fetchRemainingPages(final Function<String, CompletableFuture<P>> fetchPage,
+                                                                final Function<P, List<T>> items,
+                                                                final Function<P, String> nextCursor,
+                                                                final String after,
+                                                                final List<T> collected) {
+    return fetchPage.apply(after).thenCompose(page -> {
+      collected.addAll(items.apply(page));
+      final String next = nextCursor.apply(page);
+      if (next == null) {
+        return CompletableFuture.completedFuture(collected);
+      }
+      return fetchRemainingPages(fetchPage, items, nextCursor, next, collected);
+    });
+  }
+
+  /**
+   * Follows the cursors of a paginated backend resource until the last page, streaming every record to the consumer.
+   *
+   * @param path       The path of the backend resource.
+   * @param arrayField The name of the field holding the records of a page.
+   * @param recordType The type of a record.
+   * @param consumer   Receives each record.
+   * @param after      The cursor of the page to fetch next.
+   * @param <T>        The type of a record.
+   * @return A CompletableFuture that completes once the last page has been consumed.
+   */
+  private <T> CompletableFuture<Void> streamRemainingPages(final String path, final String arrayField, final Class<T> recordType,
+                                                           final Consumer<? super T> consumer, final String after) {
+    final String url = pageUrl(path, after, pageSize);
+    final ConditionalCache.Entry cached = conditionalCache.get(url, RecordPage.class);
+
+    return exchange(conditionalGet(url, cached), response -> {
+      if (response.notModified()) {
+        final RecordPage page = (RecordPage) cached.value();
+        page.records().forEach(record -> consumer.accept(recordType.cast(record)));
+        return page.nextCursor();
+      }
+      if (!response.hasValidators()) {
+        return readRecords(response, arrayField, recordType, consumer);
+      }
+      final List<T> records = new ArrayList<>();
+      final String next = readRecords(response, arrayField, recordType, record -> {
+        records.add(record);
+        consumer.accept(record);
+      });
+      conditionalCache.put(url, response.etag(), response.lastModified(), new RecordPage(records, next), records.size());
+      return next;
+    }).thenCompose(next -> next == null
+        ? CompletableFuture.<Void>completedFuture(null)
+        : streamRemainingPages(path, arrayField, recordType, consumer, next));
+  }
+
+  /**
+   * Fetches every {@code step}th chunk of users, starting from the given one, one after the other.
+   *
+   * @param urls   The URLs of every chunk.
+   * @param index  The chunk to fetch next.
+   * @param step   The number of lanes fetching chunks side by side.
+   * @param chunks Receives each chunk at its index.
+   * @return A CompletableFuture that completes once the last chunk of the lane has been fetched.
+   */
+  private CompletableFuture<Void> fetchUserChunks(final List<String> urls, final int index, final int step,
+                                                  final UserList[] chunks) {
+    if (index >= urls.size()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return makeConditionalRequest(urls.get(index), UserList.class).thenCompose(chunk -> {
+      chunks[index] = chunk;
+      return fetchUserChunks(urls, index + step, step, chunks);
+    });
+  }
+
+  private CompletableFuture<RosterChangePage> fetchRemainingChanges(final Long since, final List<RosterChange> collected) {
+    final String url = backendHost + "/api.php/changes?limit=" + pageSize + (since == null ? "" : "&since=" + since);
+
+    return makeRequest("GET", url, null, RosterChangePage.class).thenCompose(page -> {
+      collected.addAll(page.getChanges());
+      if (page.isReset() || !page.hasMore()) {
+        return CompletableFuture.completedFuture(page.setChanges(collected));
+      }
+      return fetchRemainingChanges(page.getCursor(), collected);
+    });
+  }
+
+  private <T> String readRecords(final BackendResponse response, final String arrayField, final Class<T> recordType,
+                                 final Consumer<? super T> consumer) {
+    try {
+      return JsonRecordReader.read(response.mapper(), response.body(), arrayField, recordType, consumer);
+    } catch (final IOException ex) {
+      throw new ClientRequestException("Could not deserialize the response", ex);
+    }
+  }
+
+  private String pageUrl(final String path, final String after, final int limit) {
+    final StringBuilder url = new StringBuilder(backendHost).append(path).append("?limit=").append(limit);
+    if (after != null) {
+      url.append("&after=").append(URLEncoder.encode(after, StandardCharsets.UTF_8));
+    }
+    return url.toString();
   }
 
   /**
@@ -82,9 +465,9 @@ public class MembershipBackendClient {
   private <T> CompletableFuture<T> makeRequest(final String method, final String url, final Object body, final Class<T> responseType) {
     final URI uri = URI.create(url);
 
-    final HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(uri);
+    final HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(uri).timeout(requestTimeout);
     if (responseType != Void.class) {
-      requestBuilder.header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE);
+      requestBuilder.header(HttpHeaders.ACCEPT, acceptHeader());
     }
     String bodyString = "";
     if (body != null) {
@@ -100,8 +483,72 @@ public class MembershipBackendClient {
     return makeAsyncHttpRequest(requestBuilder.build(), responseType);
   }
 
+  /**
+   * Makes a conditional GET request to the backend API, revalidating the response cached for the URL, if any.
+   * When the backend answers 304 Not Modified the cached value is returned, without a body being received or parsed.
+   *
+   * @param url          The URL of the backend API endpoint.
+   * @param responseType The expected type of the response object.
+   * @param <T>          The type parameter representing the expected type of the response object.
+   * @return A CompletableFuture that resolves to the response object of the specified type.
+   */
+  private <T> CompletableFuture<T> makeConditionalRequest(final String url, final Class<T> responseType) {
+    final ConditionalCache.Entry cached = conditionalCache.get(url, responseType);
+
+    return exchange(conditionalGet(url, cached), response -> {
+      if (response.notModified()) {
+        return responseType.cast(cached.value());
+      }
+      final T value;
+      try (InputStream in = response.body()) {
+        value = response.mapper().readValue(in, responseType);
+      } catch (final IOException ex) {
+        throw new ClientRequestException("Could not deserialize the response", ex);
+      }
+      conditionalCache.put(url, response.etag(), response.lastModified(), value, recordsOf(value));
+      return value;
+    });
+  }
+
+  /**
+   * @param value a value parsed from a backend response
+   * @return the number of memberships or users it holds, the weight of the value in the {@link ConditionalCache}
+   */
+  private static int recordsOf(final Object value) {
+    return switch (value) {
+      case MembershipPage page -> page.getMemberships() == null ? 0 : page.getMemberships().size();
+      case UserPage page -> page.getUsers() == null ? 0 : page.getUsers().size();
+      case UserList users -> users.getUsers() == null ? 0 : users.getUsers().size();
+      case MembershipList memberships -> memberships.getMemberships() == null ? 0 : memberships.getMemberships().size();
+      default -> 1;
+    };
+  }
+
+  private HttpRequest conditionalGet(final String url, final ConditionalCache.Entry cached) {
+    final HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(URI.create(url))
+        .timeout(requestTimeout)
+        .header(HttpHeaders.ACCEPT, acceptHeader())
+        .GET();
+    if (cached != null && cached.etag() != null) {
+      requestBuilder.header(HttpHeaders.IF_NONE_MATCH, cached.etag());
+    }
+    if (cached != null && cached.lastModified() != null) {
+      requestBuilder.header(HttpHeaders.IF_MODIFIED_SINCE, cached.lastModified());
+    }
+    return requestBuilder.build();
+  }
+
+  /**
+   * @return the media types accepted from the backend: CBOR, when enabled, with JSON as the fallback.
+   */
+  private String acceptHeader() {
+    return cborEnabled ? ACCEPT_CBOR_OR_JSON : MediaType.APPLICATION_JSON_VALUE;
+  }
+
   /**
    * Makes an asynchronous HTTP request to the backend API.
+   * The response body is parsed straight from the byte stream as it arrives, rather than being
+   * buffered into a String first, as JSON or CBOR depending on its content type.
    *
    * @param request      The HTTP request object.
    * @param responseType The expected type of the response object.
@@ -109,21 +556,221 @@ public class MembershipBackendClient {
    * @return A CompletableFuture that resolves to the response object of the specified type.
    */
   protected <T> CompletableFuture<T> makeAsyncHttpRequest(final HttpRequest request, final Class<T> responseType) {
-    return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+    return exchange(request, response -> {
+      try (InputStream in = response.body()) {
+        return responseType == Void.class ? null : response.mapper().readValue(in, responseType);
+      } catch (final IOException ex) {
+        throw new ClientRequestException("Could not deserialize the response", ex);
+      }
+    });
+  }
+
+  /**
+   * Sends an HTTP request to the backend API and reads its response within the request timeout.
+   * The request first takes a permit from the {@link AdaptiveConcurrencyLimiter}, which it holds until its response
+   * has been read, so the limit follows the time the backend takes to serve the whole response. A hedged duplicate
+   * shares the permit of its request. A 404 Not Found answer counts as a response for the limit, not as a failure.
+   * When the deadline passes first, the response body is closed so that a reader blocked on a stalled transfer
+   * gives up its thread, and the result fails. Timeouts are counted in the {@code backend.timeouts} counter.
+   *
+   * @param request The HTTP request object.
+   * @param reader  Reads the response; called at most once.
+   * @param <T>     The type of the value read from the response.
+   * @return A CompletableFuture that resolves to the value read from the response.
+   */
+  private <T> CompletableFuture<T> exchange(final HttpRequest request, final Function<BackendResponse, T> reader) {
+    final AtomicReference<BackendResponse> received = new AtomicReference<>();
+    final CompletableFuture<AdaptiveConcurrencyLimiter.Permit> acquired = limiter.acquire();
+
+    return acquired
+        .thenCompose(permit -> {
+          final long start = System.nanoTime();
+          return send(request)
+              .thenApply(response -> {
+                received.set(response);
+                return reader.apply(response);
+              })
+              .whenComplete((value, ex) -> {
+                if (ex == null || ex.getCause() instanceof NotFoundException) {
+                  permit.succeeded(System.nanoTime() - start);
+                } else {
+                  permit.dropped();
+                }
+              });
+        })
+        .orTimeout(requestTimeout.toMillis(), TimeUnit.MILLISECONDS)
+        .exceptionally(ex -> {
+          if (!isTimeout(ex)) {
+            throw ex instanceof CompletionException completion ? completion : new CompletionException(ex);
+          }
+          acquired.cancel(false);
+          final BackendResponse response = received.get();
+          if (response != null && response.body() != null) {
+            closeQuietly(response.body());
+          }
+          Counter.builder("backend.timeouts")
+              .description("Backend requests not answered and read within the request timeout")
+              .tag("endpoint", endpointOf(request.uri()))
+              .register(meterRegistry)
+              .increment();
+          throw new ClientRequestException("Timed out calling URL: " + request.uri(), ex);
+        });
+  }
+
+  /**
+   * Sends an HTTP request to the backend API and returns the body of a successful response as a stream.
+   * The stream is handed over as soon as the response headers arrive, so reading it overlaps with the transfer.
+   * A 304 Not Modified answer to a conditional request is returned without a body, and a 404 Not Found answer
+   * fails with a {@link NotFoundException}.
+   * With hedging enabled, a duplicate of the request is sent when its headers are slow to arrive, and the first
+   * response received is returned.
+   * <p>
+   * The number of body bytes read is recorded in the {@code backend.response.size} summary.
+   *
+   * @param request The HTTP request object.
+   * @return A CompletableFuture that resolves to the response, whose body the caller must close.
+   */
+  private CompletableFuture<BackendResponse> send(final HttpRequest request) {
+    final String endpoint = endpointOf(request.uri());
+    final CompletableFuture<HttpResponse<InputStream>> sent = hedger == null
+        ? sendAttempt(request, endpoint)
+        : hedger.send(endpoint, () -> sendAttempt(request, endpoint), response -> closeQuietly(response.body()));
+
+    return sent
         .exceptionally(ex -> {
           throw new ClientRequestException("Failed to call URL: " + request.uri().toString(), ex);
         })
         .thenApply(response -> {
           final HttpStatus status = HttpStatus.valueOf(response.statusCode());
+          final String etag = response.headers().firstValue(HttpHeaders.ETAG).orElse(null);
+          final String lastModified = response.headers().firstValue(HttpHeaders.LAST_MODIFIED).orElse(null);
+          final boolean cbor = response.headers().firstValue(HttpHeaders.CONTENT_TYPE)
+              .map(contentType -> contentType.startsWith(MediaType.APPLICATION_CBOR_VALUE))
+              .orElse(false);
+          final ObjectMapper mapper = cbor ? cborMapper : objectMapper;
 
+          if (status == HttpStatus.NOT_MODIFIED) {
+            closeQuietly(response.body());
+            return new BackendResponse(null, mapper, etag, lastModified);
+          }
           if (status.is2xxSuccessful()) {
-            try {
-              return responseType == Void.class ? null : objectMapper.readValue(response.body(), responseType);
-            } catch (final IOException ex) {
-              throw new ClientRequestException("Could not deserialize the response", ex);
-            }
+            modifiedResponses.incrementAndGet();
+            final DistributionSummary responseSize = DistributionSummary.builder("backend.response.size")
+                .description("Size of the backend response bodies")
+                .baseUnit("bytes")
+                .tag("endpoint", endpoint)
+                .tag("format", cbor ? "cbor" : "json")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+            return new BackendResponse(new CountingInputStream(response.body(), responseSize::record), mapper, etag, lastModified);
+          }
+          closeQuietly(response.body());
+          if (status == HttpStatus.NOT_FOUND) {
+            throw new NotFoundException("Not found: " + request.uri());
           }
           throw new ClientRequestException("Bad Request");
         });
   }
+
+  /**
+   * Sends an HTTP request once. The time until the response headers arrive is recorded in the
+   * {@code backend.requests} timer, tagged by endpoint and status, and passed on to the hedger.
+   * The returned future is that of the HTTP client, so cancelling it cancels the exchange.
+   *
+   * @param request  The HTTP request object.
+   * @param endpoint The endpoint of the request, for metric tags.
+   * @return A CompletableFuture that resolves to the response once its headers have arrived.
+   */
+  private CompletableFuture<HttpResponse<InputStream>> sendAttempt(final HttpRequest request, final String endpoint) {
+    final long start = System.nanoTime();
+    final CompletableFuture<HttpResponse<InputStream>> sent = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+    sent.whenComplete((response, ex) -> {
+      final long elapsed = System.nanoTime() - start;
+      requestTimer(endpoint, response == null ? failureStatus(ex) : String.valueOf(response.statusCode()))
+          .record(elapsed, TimeUnit.NANOSECONDS);
+      if (response != null && hedger != null) {
+        hedger.record(endpoint, elapsed);
+      }
+    });
+    return sent;
+  }
+
+  private static String failureStatus(final Throwable ex) {
+    if (causedBy(ex, CancellationException.class)) {
+      return "CANCELLED";
+    }
+    return isTimeout(ex) ? "TIMEOUT" : "IO_ERROR";
+  }
+
+  private static boolean isTimeout(final Throwable ex) {
+    return causedBy(ex, TimeoutException.class) || causedBy(ex, HttpTimeoutException.class);
+  }
+
+  private static boolean causedBy(final Throwable ex, final Class<? extends Throwable> type) {
+    for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+      if (type.isInstance(cause)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Timer requestTimer(final String endpoint, final String status) {
+    return Timer.builder("backend.requests")
+        .description("Time until the backend response headers arrive")
+        .tag("endpoint", endpoint)
+        .tag("status", status)
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+
+  /**
+   * Reduces a backend URI to a low-cardinality endpoint name for metric tags.
+   *
+   * @param uri The URI of a backend request.
+   * @return The path of the URI, with user IDs and the batch lookup query replaced by placeholders.
+   */
+  private static String endpointOf(final URI uri) {
+    final String path = uri.getPath();
+    if (path.startsWith("/api.php/users/")) {
+      return "/api.php/users/{id}";
+    }
+    if (uri.getQuery() != null && uri.getQuery().contains("ids=")) {
+      return path + "?ids";
+    }
+    return path;
+  }
+
+  private static void closeQuietly(final InputStream body) {
+    try {
+      body.close();
+    } catch (final IOException ignored) {
+      // The connection is discarded either way
+    }
+  }
+
+  /**
+   * A successful backend response.
+   *
+   * @param body         the response body, which the caller must close, or null for 304 Not Modified
+   * @param mapper       the object mapper reading the body, for its content type
+   * @param etag         the ETag header, or null
+   * @param lastModified the Last-Modified header, or null
+   */
+  private record BackendResponse(InputStream body, ObjectMapper mapper, String etag, String lastModified) {
+
+    boolean notModified() {
+      return body == null;
+    }
+
+    boolean hasValidators() {
+      return etag != null || lastModified != null;
+    }
+  }
+
+  /**
+   * The records and next cursor of a streamed page, kept to replay the page when it has not changed.
+   */
+  private record RecordPage(List<?> records, String nextCursor) {
+  }
 }
@@ -0,0 +1,63 @@
+package integrations.turnitin.com.membersearcher.client;
+
+import integrations.turnitin.com.membersearcher.exception.ClientRequestException;
+import integrations.turnitin.com.membersearcher.model.Membership;
+import integrations.turnitin.com.membersearcher.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+/**
+ * Reactive counterpart of {@link MembershipBackendClient}, active with the {@code reactive} profile.
+ * <p>
+ * The lists are requested as newline-delimited JSON, which the php-backend service writes row by row,
+ * and decoded one record at a time. Records are only read from the connection as fast as the subscriber
+ * requests them, so a slow consumer slows down the backend response instead of buffering it in memory.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveMembershipBackendClient {
+
+  private final WebClient webClient;
+
+  /**
+   * Constructs a new instance of the ReactiveMembershipBackendClient.
+   * @param webClientBuilder The auto-configured builder, which carries the JSON codecs and the client metrics.
+   * @param backendHost      The base URL of the php-backend service.
+   */
+  public ReactiveMembershipBackendClient(final WebClient.Builder webClientBuilder,
+                                         @Value("${backend.host:http://localhost:8041}") final String backendHost) {
+    this.webClient = webClientBuilder.baseUrl(backendHost).build();
+  }
+
+  /**
+   * Streams every membership, ordered by id, from the backend API.
+   *
+   * @return A Flux emitting each membership as soon as its line has been received.
+   */
+  public Flux<Membership> streamMemberships() {
+    return streamRecords("/api.php/members", Membership.class);
+  }
+
+  /**
+   * Streams every user, ordered by id, from the backend API.
+   *
+   * @return A Flux emitting each user as soon as its line has been received.
+   */
+  public Flux<User> streamUsers() {
+    return streamRecords("/api.php/users", User.class);
+  }
+
+  private <T> Flux<T> streamRecords(final String path, final Class<T> recordType) {
+    return webClient.get()
+        .uri(path)
+        .accept(MediaType.APPLICATION_NDJSON)
+        .retrieve()
+        .bodyToFlux(recordType)
+        .onErrorMap(ex -> !(ex instanceof ClientRequestException),
+            ex -> new ClientRequestException("Failed to call URL: " + path, ex));
+  }
+}
@@ -0,0 +1,147 @@
+package integrations.turnitin.com.membersearcher.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Hedges idempotent requests to cut their tail latency.
+ * <p>
+ * When a request has not been answered within the latency that a given share of the recent requests to the same
+ * endpoint were answered within, such as their 95th percentile, a duplicate is sent and whichever answers first is
+ * used; the other is cancelled, or discarded if it answers too. A request stuck behind one slow backend worker is
+ * thereby answered by another, while only the slowest few percent of the requests are sent twice. No request is
+ * hedged until enough latencies of its endpoint have been recorded.
+ */
+public class RequestHedger {
+
+  private static final int WINDOW_SIZE = 256;
+  private static final int MIN_SAMPLES = 32;
+
+  private final double percentile;
+  private final ConcurrentMap<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+  private final Counter hedgesSent;
+  private final Counter hedgesWon;
+
+  /**
+   * Constructor.
+   * @param percentile    the share of the recent requests answered before a request is hedged, between 0 and 1
+   * @param meterRegistry the registry receiving the hedge counters
+   */
+  public RequestHedger(final double percentile, final MeterRegistry meterRegistry) {
+    if (percentile <= 0 || percentile >= 1) {
+      throw new IllegalArgumentException("The hedge percentile must be between 0 and 1: " + percentile);
+    }
+    this.percentile = percentile;
+    this.hedgesSent = Counter.builder("backend.hedges")
+        .description("Duplicate backend requests sent because the first was slower than the hedge percentile")
+        .tag("result", "sent")
+        .register(meterRegistry);
+    this.hedgesWon = Counter.builder("backend.hedges")
+        .description("Duplicate backend requests sent because the first was slower than the hedge percentile")
+        .tag("result", "won")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Records the latency of an answered request.
+   *
+   * @param endpoint the endpoint of the request
+   * @param nanos    the time until the request was answered, in nanoseconds
+   */
+  public void record(final String endpoint, final long nanos) {
+    latencies.computeIfAbsent(endpoint, key -> new LatencyWindow()).add(nanos);
+  }
+
+  /**
+   * Sends a request, and a duplicate if it is not answered within the hedge delay of its endpoint.
+   * The result fails only once every request sent has failed, or when the first request fails before the
+   * hedge delay has passed.
+   *
+   * @param endpoint the endpoint of the request
+   * @param attempt  sends the request, once per attempt
+   * @param discard  releases the result of an attempt that answered after another one
+   * @param <R>      the type of the result of an attempt
+   * @return A CompletableFuture that resolves to the result of the first attempt answered.
+   */
+  public <R> CompletableFuture<R> send(final String endpoint, final Supplier<CompletableFuture<R>> attempt,
+                                       final Consumer<R> discard) {
+    final long delay = delayOf(endpoint);
+    if (delay < 0) {
+      return attempt.get();
+    }
+
+    final CompletableFuture<R> first = new CompletableFuture<>();
+    final List<CompletableFuture<R>> attempts = new CopyOnWriteArrayList<>();
+    final AtomicInteger pending = new AtomicInteger(1);
+    race(attempt.get(), attempts, first, pending, discard, false);
+    CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> {
+      if (!first.isDone() && pending.incrementAndGet() > 1) {
+        hedgesSent.increment();
+        race(attempt.get(), attempts, first, pending, discard, true);
+      }
+    });
+    first.whenComplete((result, ex) -> attempts.forEach(other -> other.cancel(true)));
+    return first;
+  }
+
+  /**
+   * @param endpoint the endpoint of a request
+   * @return the delay after which a request to the endpoint is hedged, in nanoseconds, or -1 not to hedge it yet
+   */
+  long delayOf(final String endpoint) {
+    final LatencyWindow window = latencies.get(endpoint);
+    return window == null ? -1 : window.percentile(percentile);
+  }
+
+  private <R> void race(final CompletableFuture<R> attempt, final List<CompletableFuture<R>> attempts,
+                        final CompletableFuture<R> first, final AtomicInteger pending,
+                        final Consumer<R> discard, final boolean hedge) {
+    attempts.add(attempt);
+    attempt.whenComplete((result, ex) -> {
+      if (ex == null) {
+        if (first.complete(result)) {
+          if (hedge) {
+            hedgesWon.increment();
+          }
+        } else {
+          discard.accept(result);
+        }
+      } else if (pending.decrementAndGet() == 0) {
+        first.completeExceptionally(ex);
+      }
+    });
+  }
+
+  /**
+   * The latencies of the most recent requests to an endpoint, in a ring buffer.
+   */
+  private static final class LatencyWindow {
+
+    private final long[] samples = new long[WINDOW_SIZE];
+    private long count;
+
+    synchronized void add(final long nanos) {
+      samples[(int) (count++ % WINDOW_SIZE)] = nanos;
+    }
+
+    synchronized long percentile(final double percentile) {
+      if (count < MIN_SAMPLES) {
+        return -1;
+      }
+      final long[] sorted = Arrays.copyOf(samples, (int) Math.min(count, WINDOW_SIZE));
+      Arrays.sort(sorted);
+      return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+    }
+  }
+}
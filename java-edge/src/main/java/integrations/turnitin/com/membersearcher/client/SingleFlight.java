@@ -0,0 +1,72 @@
+package integrations.turnitin.com.membersearcher.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates concurrent asynchronous calls by key.
+ * <p>
+ * The first caller for a key starts the call; every caller arriving while it is still in flight
+ * shares its result instead of starting another one. Once the call completes the key is released,
+ * so the next caller starts a fresh call. Each caller receives its own dependent future, so one
+ * caller completing or cancelling its future cannot affect the others.
+ *
+ * @param <K> the type of the keys identifying a call
+ * @param <V> the type of the call results
+ */
+public class SingleFlight<K, V> {
+
+  private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+  private final AtomicLong calls = new AtomicLong();
+  private final AtomicLong coalesced = new AtomicLong();
+
+  /**
+   * Runs the call for the given key, unless one is already in flight, in which case its result is shared.
+   *
+   * @param key  the key identifying the call
+   * @param call starts the call
+   * @return A CompletableFuture that resolves to the result of the call.
+   */
+  public CompletableFuture<V> execute(final K key, final Supplier<CompletableFuture<V>> call) {
+    calls.incrementAndGet();
+    final CompletableFuture<V> created = new CompletableFuture<>();
+    final CompletableFuture<V> pending = inFlight.putIfAbsent(key, created);
+    if (pending != null) {
+      coalesced.incrementAndGet();
+      return pending.copy();
+    }
+
+    CompletableFuture<V> started;
+    try {
+      started = call.get();
+    } catch (final RuntimeException ex) {
+      started = CompletableFuture.failedFuture(ex);
+    }
+    started.whenComplete((value, ex) -> {
+      inFlight.remove(key, created);
+      if (ex == null) {
+        created.complete(value);
+      } else {
+        created.completeExceptionally(ex);
+      }
+    });
+    return created.copy();
+  }
+
+  /**
+   * @return the number of calls requested, whether started or coalesced
+   */
+  public long getCalls() {
+    return calls.get();
+  }
+
+  /**
+   * @return the number of calls that shared the result of a call already in flight
+   */
+  public long getCoalesced() {
+    return coalesced.get();
+  }
+}
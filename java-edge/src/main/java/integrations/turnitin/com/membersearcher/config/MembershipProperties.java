@@ -0,0 +1,77 @@
+package integrations.turnitin.com.membersearcher.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * The {@code membership.*} settings of how {@link integrations.turnitin.com.membersearcher.service.MembershipService}
+ * loads, joins, caches and saves the roster, and of how its changes are streamed to browsers. Settings left out of
+ * the configuration take the defaults given here.
+ *
+ * @param cache       the snapshot of the whole roster
+ * @param join        how the memberships are joined with their users
+ * @param deltaSync   the refresh of the snapshot from the change feed of the backend
+ * @param courseCache the snapshots of single courses
+ * @param warmStart   the file the snapshot is saved to, and served from on startup
+ * @param push        the streams of roster changes
+ */
+@ConfigurationProperties("membership")
+public record MembershipProperties(@DefaultValue Cache cache,
+                                   @DefaultValue Join join,
+                                   @DefaultValue DeltaSync deltaSync,
+                                   @DefaultValue CourseCache courseCache,
+                                   @DefaultValue WarmStart warmStart,
+                                   @DefaultValue Push push) {
+
+  /**
+   * @param ttl how long a joined snapshot is served before it is refreshed in the background
+   */
+  public record Cache(@DefaultValue("30s") Duration ttl) {
+  }
+
+  /**
+   * @param streaming         whether to stream backend records into the join rather than fetching whole lists
+   * @param batchLookupRatio  the largest share of all users the memberships may reference for users to be looked up by id
+   * @param batchLookupMaxIds the largest number of distinct users looked up by id, 0 to always fetch every user
+   * @param inBackend         whether to fetch the memberships with their users joined by the backend, in one request per page
+   */
+  public record Join(@DefaultValue("false") boolean streaming,
+                     @DefaultValue("0.1") double batchLookupRatio,
+                     @DefaultValue("5000") int batchLookupMaxIds,
+                     @DefaultValue("false") boolean inBackend) {
+  }
+
+  /**
+   * @param enabled whether to refresh the snapshot from the change feed of the backend rather than by fetching everything
+   */
+  public record DeltaSync(@DefaultValue("false") boolean enabled) {
+  }
+
+  /**
+   * @param maxCourses the largest number of course snapshots kept, beyond which the least recently used is dropped
+   */
+  public record CourseCache(@DefaultValue("1000") int maxCourses) {
+  }
+
+  /**
+   * @param file   the file holding the saved roster, or null or blank not to keep one
+   * @param maxAge the age beyond which a saved roster is not served on startup
+   */
+  public record WarmStart(String file,
+                          @DefaultValue("1h") Duration maxAge) {
+  }
+
+  /**
+   * @param interval   the delay between two polls for changes to push
+   * @param timeout    how long an event stream stays open before the browser reconnects
+   * @param heartbeat  the delay between two heartbeat comments sent to every stream
+   * @param maxPending the most events queued for a stream before it is dropped
+   */
+  public record Push(@DefaultValue("5s") Duration interval,
+                     @DefaultValue("30m") Duration timeout,
+                     @DefaultValue("30s") Duration heartbeat,
+                     @DefaultValue("16") int maxPending) {
+  }
+}
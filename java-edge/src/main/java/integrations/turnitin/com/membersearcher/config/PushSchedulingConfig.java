@@ -0,0 +1,41 @@
+package integrations.turnitin.com.membersearcher.config;
+
+import integrations.turnitin.com.membersearcher.controller.MembershipEventStream;
+import integrations.turnitin.com.membersearcher.service.MembershipService;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+/**
+ * Schedules the push of roster changes and the heartbeats of the event streams, every
+ * {@code membership.push.interval} and {@code membership.push.heartbeat}, as bound by {@link MembershipProperties}.
+ * Each task runs again once the delay has passed after its previous run ended.
+ */
+@Configuration
+@Profile("!reactive")
+public class PushSchedulingConfig implements SchedulingConfigurer {
+
+  private final MembershipProperties properties;
+  private final MembershipService membershipService;
+  private final MembershipEventStream membershipEventStream;
+
+  /**
+   * Constructor.
+   * @param properties            the {@code membership.*} settings, of which the push schedules are used
+   * @param membershipService     the service pushing the changes
+   * @param membershipEventStream the streams sent the heartbeats
+   */
+  public PushSchedulingConfig(final MembershipProperties properties, final MembershipService membershipService,
+                              final MembershipEventStream membershipEventStream) {
+    this.properties = properties;
+    this.membershipService = membershipService;
+    this.membershipEventStream = membershipEventStream;
+  }
+
+  @Override
+  public void configureTasks(final ScheduledTaskRegistrar registrar) {
+    registrar.addFixedDelayTask(membershipService::pushChanges, properties.push().interval());
+    registrar.addFixedDelayTask(membershipEventStream::sendHeartbeats, properties.push().heartbeat());
+  }
+}
@@ -0,0 +1,21 @@
+package integrations.turnitin.com.membersearcher.config;
+
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Serves the {@code reactive} profile from Reactor Netty.
+ * Tomcat is on the classpath for the servlet stack and would otherwise be picked as the reactive server too;
+ * Netty serves every connection from a small, fixed set of event loop threads.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveServerConfig {
+
+  @Bean
+  public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+    return new NettyReactiveWebServerFactory();
+  }
+}
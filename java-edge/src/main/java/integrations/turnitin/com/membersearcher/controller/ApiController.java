@@ -1,29 +1,73 @@
 package integrations.turnitin.com.membersearcher.controller;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.CompletableFuture;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import integrations.turnitin.com.membersearcher.cache.SerializedSnapshot;
+import integrations.turnitin.com.membersearcher.model.Membership;
 import integrations.turnitin.com.membersearcher.model.MembershipList;
+import integrations.turnitin.com.membersearcher.model.MembershipPage;
+import integrations.turnitin.com.membersearcher.model.User;
 import integrations.turnitin.com.membersearcher.service.MembershipService;
+import integrations.turnitin.com.membersearcher.service.UserService;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @CrossOrigin
 @RequestMapping("/api")
+@Profile("!reactive")
 public class ApiController {
 
+	private static final int MAX_PAGE_LIMIT = 1000;
+	private static final int NDJSON_FLUSH_INTERVAL = 256;
+	private static final String GZIP_ETAG_SUFFIX = "-gzip";
+
 	private final MembershipService membershipService;
+	private final UserService userService;
+	private final MembershipEventStream membershipEventStream;
+	private final ObjectMapper objectMapper;
+	private final ObjectWriter membershipWriter;
+	private final ObjectWriter membershipListWriter;
+	private final Map<MembershipList, CompletableFuture<SerializedSnapshot>> serializedSnapshots = Collections.synchronizedMap(new WeakHashMap<>());
 
 	/**
 	 * Constructor.
-	 * @param membershipService the membership service class
+	 * @param membershipService     the membership service class
+	 * @param userService           the service looking up single users
+	 * @param membershipEventStream the streams of roster changes
+	 * @param objectMapper          the object mapper used to write streamed memberships
 	 */
-	public ApiController(final MembershipService membershipService) {
+	public ApiController(final MembershipService membershipService, final UserService userService,
+			final MembershipEventStream membershipEventStream, final ObjectMapper objectMapper) {
 		this.membershipService = membershipService;
+		this.userService = userService;
+		this.membershipEventStream = membershipEventStream;
+		this.objectMapper = objectMapper;
+		this.membershipWriter = objectMapper.writerFor(Membership.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		this.membershipListWriter = objectMapper.writerFor(MembershipList.class);
 	}
 
 	/**
@@ -32,11 +76,224 @@ public class ApiController {
 	 * as a {@link CompletableFuture} containing a {@link MembershipList} object. The
 	 * {@link MembershipList} object will contain information about each membership,
 	 * including potentially associated user data.
+	 * <p>
+	 * The response carries the version of the memberships as its ETag. A request whose
+	 * {@code If-None-Match} holds the current version is answered with 304 Not Modified
+	 * and no body. This method only answers clients that ask for {@code application/cbor};
+	 * every other client, including those accepting any media type or sending no {@code Accept} header,
+	 * is served JSON by {@link #fetchAllMembershipsJson(String)}.
 	 *
 	 * @return A {@link CompletableFuture} containing a {@link MembershipList} object with information about all memberships.
    */
+	@GetMapping(value = "/course/members", produces = MediaType.APPLICATION_CBOR_VALUE)
+	public CompletableFuture<ResponseEntity<MembershipList>> fetchAllMemberships() {
+		return membershipService.fetchAllMembershipsWithUsers()
+				.thenApply(memberships -> ResponseEntity.ok()
+						.eTag(membershipService.versionOf(memberships))
+						.varyBy(HttpHeaders.ACCEPT)
+						.body(memberships));
+	}
+
+	/**
+	 * Fetches a list of all memberships, including associated users, as JSON.
+	 * Selected unless the client asks for CBOR, NDJSON or a page. Each snapshot of the
+	 * memberships is serialized and gzip-compressed once, and every request for it is answered by writing those
+	 * bytes, compressed when the client accepts gzip. As for {@link #fetchAllMemberships()}, the response carries
+	 * the version of the memberships as its ETag.
+	 *
+	 * @param acceptEncoding the content codings accepted by the client, if any.
+	 * @return A {@link CompletableFuture} containing the JSON of a {@link MembershipList} object with all memberships.
+	 */
 	@GetMapping("/course/members")
-	public CompletableFuture<MembershipList> fetchAllMemberships() {
-		return membershipService.fetchAllMembershipsWithUsers();
+	public CompletableFuture<ResponseEntity<byte[]>> fetchAllMembershipsJson(
+			@RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) final String acceptEncoding) {
+		return membershipService.fetchAllMembershipsWithUsers()
+				.thenApply(memberships -> serializedResponse(memberships, acceptEncoding));
+	}
+
+	/**
+	 * Fetches the memberships of one course, including associated users.
+	 * Each course is cached on its own, so a request only costs work in proportion to its course.
+	 * As for {@link #fetchAllMemberships()}, the response carries the version of the memberships as its
+	 * ETag. This method only answers clients that ask for {@code application/cbor}; every other client is served
+	 * JSON by {@link #fetchCourseMembershipsJson(String, String)}.
+	 *
+	 * @param courseId the id of the course, a UUID.
+	 * @return A {@link CompletableFuture} containing a {@link MembershipList} object with the memberships of the course.
+	 */
+	@GetMapping(value = "/course/{courseId}/members", produces = MediaType.APPLICATION_CBOR_VALUE)
+	public CompletableFuture<ResponseEntity<MembershipList>> fetchCourseMemberships(@PathVariable("courseId") final String courseId) {
+		return membershipService.fetchCourseMembershipsWithUsers(courseId)
+				.thenApply(memberships -> ResponseEntity.ok()
+						.eTag(membershipService.versionOf(memberships))
+						.varyBy(HttpHeaders.ACCEPT)
+						.body(memberships));
+	}
+
+	/**
+	 * Fetches the memberships of one course, including associated users, as JSON.
+	 * As for {@link #fetchAllMembershipsJson(String)}, the serialized and compressed snapshot of the course is
+	 * written as it is.
+	 *
+	 * @param courseId       the id of the course, a UUID.
+	 * @param acceptEncoding the content codings accepted by the client, if any.
+	 * @return A {@link CompletableFuture} containing the JSON of a {@link MembershipList} object with the memberships of the course.
+	 */
+	@GetMapping("/course/{courseId}/members")
+	public CompletableFuture<ResponseEntity<byte[]>> fetchCourseMembershipsJson(@PathVariable("courseId") final String courseId,
+			@RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) final String acceptEncoding) {
+		return membershipService.fetchCourseMembershipsWithUsers(courseId)
+				.thenApply(memberships -> serializedResponse(memberships, acceptEncoding));
+	}
+
+	/**
+	 * Streams all memberships, including associated users, as newline-delimited JSON.
+	 * Selected instead of {@link #fetchAllMemberships()} when the client accepts {@code application/x-ndjson}.
+	 * Each membership is written as its own line as soon as it is serialized and the response is flushed
+	 * in small batches, so clients start receiving data immediately and the edge never buffers the whole
+	 * serialized roster.
+	 *
+	 * @return A {@link ResponseEntity} whose body writes one JSON membership per line.
+	 */
+	@GetMapping(value = "/course/members", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> streamAllMemberships() {
+		return ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_NDJSON)
+				.body(outputStream -> writeNdjson(membershipService.fetchAllMembershipsWithUsers().join(), outputStream));
+	}
+
+	/**
+	 * Fetches one page of memberships, including associated users.
+	 * Selected instead of {@link #fetchAllMemberships()} whenever a {@code limit} is given, so the
+	 * response size is bounded regardless of how many memberships exist. The {@code next_cursor}
+	 * of the returned page is passed back as {@code cursor} to fetch the following page; it is
+	 * null on the last page.
+	 *
+	 * @param limit  the maximum number of memberships in the page, capped at {@value #MAX_PAGE_LIMIT}.
+	 * @param cursor the cursor returned with the previous page, omitted for the first page.
+	 * @return A {@link CompletableFuture} containing a {@link MembershipPage} object with the memberships of the page.
+	 */
+	@GetMapping(value = "/course/members", params = "limit")
+	public CompletableFuture<MembershipPage> fetchMembershipsPage(@RequestParam("limit") final int limit,
+			@RequestParam(name = "cursor", required = false) final String cursor) {
+		return membershipService.fetchMembershipsPage(cursor, Math.min(limit, MAX_PAGE_LIMIT));
+	}
+
+	/**
+	 * Searches the memberships by the name or email of their user, ignoring case.
+	 * Only the matching memberships are returned, so clients no longer need to download
+	 * and filter the full list themselves.
+	 *
+	 * @param query the text to look for in the user name or email; a blank query matches every membership.
+	 * @return A {@link CompletableFuture} containing a {@link MembershipList} object with the matching memberships.
+	 */
+	@GetMapping("/course/members/search")
+	public CompletableFuture<MembershipList> searchMemberships(@RequestParam(name = "q", defaultValue = "") final String query) {
+		return membershipService.searchMembershipsWithUsers(query);
+	}
+
+	/**
+	 * Streams the changes of the roster as server-sent events.
+	 * Each {@code changes} event holds the memberships added or changed, with their users, and the ids of those
+	 * removed, along with the version of the roster before and after them. All streams are fed by one poll of the
+	 * backend per interval, so open dashboards stay current without fetching the list again.
+	 *
+	 * @return A {@link SseEmitter} sending the changes as they are found.
+	 */
+	@GetMapping(value = "/course/members/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public SseEmitter streamMembershipChanges() {
+		return membershipEventStream.subscribe();
+	}
+
+	/**
+	 * Fetches a single user, for example to show their details.
+	 * Users are served from a bounded cache, so looking up a hot user costs no backend call.
+	 *
+	 * @param userId the id of the user, a UUID.
+	 * @return A {@link CompletableFuture} containing the {@link User}; an unknown id is answered with 404 Not Found.
+	 */
+	@GetMapping("/users/{userId}")
+	public CompletableFuture<User> fetchUser(@PathVariable("userId") final String userId) {
+		return userService.fetchUser(userId);
+	}
+
+	/**
+	 * Answers with the serialized form of the memberships, serializing and compressing them on their first request only.
+	 * The gzip-encoded representation has bytes of its own, so its ETag, a strong validator, is the version with a
+	 * {@code -gzip} suffix rather than the version itself.
+	 *
+	 * @param memberships    the membership list, usually a snapshot
+	 * @param acceptEncoding the content codings accepted by the client, if any
+	 * @return the response, gzip-encoded when the client accepts it
+	 */
+	private ResponseEntity<byte[]> serializedResponse(final MembershipList memberships, final String acceptEncoding) {
+		final SerializedSnapshot serialized = serialized(memberships);
+		final String version = membershipService.versionOf(memberships);
+		final boolean gzip = acceptsGzip(acceptEncoding);
+		final ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+				.eTag(gzip ? version + GZIP_ETAG_SUFFIX : version)
+				.varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+				.contentType(MediaType.APPLICATION_JSON);
+		if (gzip) {
+			return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(serialized.getGzip());
+		}
+		return response.body(serialized.getJson());
+	}
+
+	/**
+	 * Returns the serialized form of the memberships, serializing and compressing them if no request has done so yet.
+	 * The map only holds one future per snapshot, and its lock is released before the work starts, so serializing one
+	 * snapshot never holds up the requests for another; concurrent requests for the same snapshot wait for the first.
+	 *
+	 * @param memberships the membership list, usually a snapshot
+	 * @return the serialized memberships
+	 */
+	private SerializedSnapshot serialized(final MembershipList memberships) {
+		final CompletableFuture<SerializedSnapshot> created = new CompletableFuture<>();
+		final CompletableFuture<SerializedSnapshot> existing = serializedSnapshots.putIfAbsent(memberships, created);
+		if (existing != null) {
+			return existing.join();
+		}
+		try {
+			created.complete(SerializedSnapshot.of(membershipListWriter, memberships));
+		} catch (final RuntimeException ex) {
+			serializedSnapshots.remove(memberships, created);
+			created.completeExceptionally(ex);
+		}
+		return created.join();
+	}
+
+	/**
+	 * @param acceptEncoding the value of the {@code Accept-Encoding} header, may be null
+	 * @return whether it lists gzip, or any coding, without a zero quality
+	 */
+	private static boolean acceptsGzip(final String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		for (final String coding : acceptEncoding.split(",")) {
+			final String[] parts = coding.split(";");
+			final String name = parts[0].trim();
+			if (name.equalsIgnoreCase("gzip") || name.equals("*")) {
+				return parts.length < 2 || !parts[1].trim().matches("(?i)q\\s*=\\s*0(\\.0*)?");
+			}
+		}
+		return false;
+	}
+
+	private void writeNdjson(final MembershipList memberships, final OutputStream outputStream) throws IOException {
+		try (JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+			generator.setRootValueSeparator(new SerializedString("\n"));
+			int written = 0;
+			for (final Membership membership : memberships.getMemberships()) {
+				membershipWriter.writeValue(generator, membership);
+				if (++written % NDJSON_FLUSH_INTERVAL == 0) {
+					generator.flush();
+				}
+			}
+			if (written > 0) {
+				generator.writeRaw('\n');
+			}
+		}
 	}
 }
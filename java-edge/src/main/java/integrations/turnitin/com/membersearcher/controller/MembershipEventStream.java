@@ -0,0 +1,240 @@
+package integrations.turnitin.com.membersearcher.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import integrations.turnitin.com.membersearcher.config.MembershipProperties;
+import integrations.turnitin.com.membersearcher.config.PushSchedulingConfig;
+import integrations.turnitin.com.membersearcher.model.MembershipChanges;
+import integrations.turnitin.com.membersearcher.service.MembershipService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+/**
+ * Streams the changes of the roster to browsers as server-sent events.
+ * <p>
+ * Each stream subscribes to the changes pushed by {@link MembershipService#pushChanges()}, so every open stream is
+ * fed by the same single poll of the backend. A batch of changes is serialized once and the same JSON is sent as a
+ * {@code changes} event to every stream, with the version of the roster as the event id. A stream ends after
+ * {@code membership.push.timeout}, after which browsers reconnect on their own, or as soon as sending to it fails.
+ * A comment is sent to every stream each {@code membership.push.heartbeat}, so that streams whose browser has gone
+ * away are noticed and closed even while the roster does not change.
+ * <p>
+ * Events are queued per stream and written on the stream's own turn of the executor, so the scheduled thread pushing
+ * the changes and the heartbeats never waits on a browser. A browser reading too slowly to keep more than
+ * {@code membership.push.max-pending} events queued is dropped, and reconnects to start from a fresh roster.
+ */
+@Component
+@Profile("!reactive")
+public class MembershipEventStream {
+
+  private static final Logger log = Logger.getLogger(MembershipEventStream.class.getSimpleName());
+  private static final String CHANGES_EVENT = "changes";
+
+  private final MembershipService membershipService;
+  private final ObjectMapper objectMapper;
+  private final Duration timeout;
+  private final int maxPending;
+  private final Executor executor;
+  private final Counter droppedStreams;
+  private final AtomicReference<SerializedChanges> lastSerialized = new AtomicReference<>();
+  private final Set<Stream> streams = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Constructor, writing to the streams on virtual threads.
+   * @param membershipService the service pushing the changes
+   * @param objectMapper      the object mapper serializing the changes
+   * @param properties        the {@code membership.*} settings, of which the {@code membership.push.*} ones are used
+   * @param meterRegistry     the registry receiving the count of dropped streams
+   */
+  @Autowired
+  public MembershipEventStream(final MembershipService membershipService, final ObjectMapper objectMapper,
+                               final MembershipProperties properties, final MeterRegistry meterRegistry) {
+    this(membershipService, objectMapper, properties.push().timeout(), properties.push().maxPending(),
+        Executors.newVirtualThreadPerTaskExecutor(), meterRegistry);
+  }
+
+  /**
+   * Constructor.
+   * @param membershipService the service pushing the changes
+   * @param objectMapper      the object mapper serializing the changes
+   * @param timeout           how long a stream stays open
+   * @param maxPending        the most events queued for a stream before it is dropped
+   * @param executor          writes the queued events to the streams
+   * @param meterRegistry     the registry receiving the count of dropped streams
+   */
+  public MembershipEventStream(final MembershipService membershipService, final ObjectMapper objectMapper,
+                               final Duration timeout, final int maxPending, final Executor executor,
+                               final MeterRegistry meterRegistry) {
+    this.membershipService = membershipService;
+    this.objectMapper = objectMapper;
+    this.timeout = timeout;
+    this.maxPending = maxPending;
+    this.executor = executor;
+    this.droppedStreams = Counter.builder("membership.push.dropped")
+        .description("Event streams closed because their browser fell too far behind")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Opens a stream of the changes of the roster.
+   * A comment is sent straight away, so the browser sees the stream open before the first change.
+   *
+   * @return the emitter of the stream
+   */
+  public SseEmitter subscribe() {
+    final SseEmitter emitter = new SseEmitter(timeout.toMillis());
+    final Stream stream = new Stream(emitter);
+    stream.subscription = membershipService.subscribe(changes -> stream.offer(event(changes)));
+    emitter.onCompletion(stream::close);
+    emitter.onTimeout(stream::close);
+    emitter.onError(ex -> stream.close());
+    streams.add(stream);
+    stream.offer(SseEmitter.event().comment("subscribed"));
+    return emitter;
+  }
+
+  /**
+   * Queues a comment to every open stream, so that those that can no longer be written to are closed.
+   * Runs every {@code membership.push.heartbeat}; see {@link PushSchedulingConfig}.
+   */
+  public void sendHeartbeats() {
+    for (final Stream stream : streams) {
+      stream.offer(SseEmitter.event().comment("heartbeat"));
+    }
+  }
+
+  private SseEmitter.SseEventBuilder event(final MembershipChanges changes) {
+    return SseEmitter.event()
+        .id(changes.getVersion())
+        .name(CHANGES_EVENT)
+        .data(json(changes), MediaType.APPLICATION_JSON);
+  }
+
+  /**
+   * @return the JSON of the changes, serialized on their first send only
+   */
+  private String json(final MembershipChanges changes) {
+    final SerializedChanges last = lastSerialized.get();
+    if (last != null && last.changes() == changes) {
+      return last.json();
+    }
+    try {
+      final String json = objectMapper.writeValueAsString(changes);
+      lastSerialized.set(new SerializedChanges(changes, json));
+      return json;
+    } catch (final JsonProcessingException ex) {
+      throw new UncheckedIOException("Could not serialize the changes", ex);
+    }
+  }
+
+  /**
+   * An open stream with the events queued for it. At most one task of the executor writes to the stream at a time.
+   */
+  private final class Stream {
+
+    private final SseEmitter emitter;
+    private final Queue<SseEmitter.SseEventBuilder> pending = new ArrayDeque<>();
+    private volatile Runnable subscription = () -> { };
+    private boolean writing;
+    private boolean closed;
+
+    Stream(final SseEmitter emitter) {
+      this.emitter = emitter;
+    }
+
+    /**
+     * Queues an event, and starts writing the queue unless it is being written already. Drops the stream instead
+     * when the queue is full. Never blocks on the browser.
+     */
+    void offer(final SseEmitter.SseEventBuilder event) {
+      final boolean overflowed;
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        overflowed = pending.size() >= maxPending;
+        if (overflowed) {
+          pending.clear();
+          closed = true;
+        } else {
+          pending.add(event);
+          if (writing) {
+            return;
+          }
+          writing = true;
+        }
+      }
+      if (overflowed) {
+        drop();
+      } else {
+        executor.execute(this::write);
+      }
+    }
+
+    /**
+     * Writes the queued events until the queue is empty. Closes the stream when writing to it fails.
+     */
+    private void write() {
+      while (true) {
+        final SseEmitter.SseEventBuilder event;
+        synchronized (this) {
+          event = closed ? null : pending.poll();
+          if (event == null) {
+            writing = false;
+            return;
+          }
+        }
+        try {
+          emitter.send(event);
+        } catch (final IOException | IllegalStateException ex) {
+          close();
+          emitter.completeWithError(ex);
+        }
+      }
+    }
+
+    /**
+     * Unsubscribes a stream that fell behind and ends it. Ending it may wait for a write in progress, so it is left
+     * to the executor.
+     */
+    private void drop() {
+      droppedStreams.increment();
+      log.info("Dropping an event stream more than " + maxPending + " events behind");
+      unsubscribe();
+      executor.execute(emitter::complete);
+    }
+
+    void close() {
+      synchronized (this) {
+        closed = true;
+        pending.clear();
+      }
+      unsubscribe();
+    }
+
+    private void unsubscribe() {
+      subscription.run();
+      streams.remove(this);
+    }
+  }
+
+  private record SerializedChanges(MembershipChanges changes, String json) {
+  }
+}
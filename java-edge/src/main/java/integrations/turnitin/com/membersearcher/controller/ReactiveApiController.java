@@ -0,0 +1,58 @@
+package integrations.turnitin.com.membersearcher.controller;
+
+import integrations.turnitin.com.membersearcher.model.Membership;
+import integrations.turnitin.com.membersearcher.model.MembershipList;
+import integrations.turnitin.com.membersearcher.service.ReactiveMembershipService;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * WebFlux counterpart of {@link ApiController}, active with the {@code reactive} profile.
+ */
+@RestController
+@CrossOrigin
+@RequestMapping("/api")
+@Profile("reactive")
+public class ReactiveApiController {
+
+	private final ReactiveMembershipService membershipService;
+
+	/**
+	 * Constructor.
+	 * @param membershipService the reactive membership service class
+	 */
+	public ReactiveApiController(final ReactiveMembershipService membershipService) {
+		this.membershipService = membershipService;
+	}
+
+	/**
+	 * Fetches a list of all memberships, including associated users.
+	 * The response body is the same {@link MembershipList} document as {@link ApiController#fetchAllMemberships()}.
+	 *
+	 * @return A {@link Mono} containing a {@link MembershipList} object with information about all memberships.
+	 */
+	@GetMapping("/course/members")
+	public Mono<MembershipList> fetchAllMemberships() {
+		return membershipService.fetchAllMembershipsWithUsers();
+	}
+
+	/**
+	 * Streams all memberships, including associated users, as newline-delimited JSON.
+	 * Selected instead of {@link #fetchAllMemberships()} when the client accepts {@code application/x-ndjson}.
+	 * Memberships are written as they arrive from the backend, and only as fast as the client reads them,
+	 * so neither a slow client nor a large course holds a thread or the whole roster.
+	 *
+	 * @return A {@link Flux} emitting each membership with its user.
+	 */
+	@GetMapping(value = "/course/members", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public Flux<Membership> streamAllMemberships() {
+		return membershipService.streamMembershipsWithUsers();
+	}
+}
@@ -0,0 +1,12 @@
+package integrations.turnitin.com.membersearcher.exception;
+
+public class InvalidRequestException extends RuntimeException {
+
+	public InvalidRequestException(final String message) {
+		super(message);
+	}
+
+	public InvalidRequestException(final String message, final Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -0,0 +1,11 @@
+package integrations.turnitin.com.membersearcher.exception;
+
+/**
+ * Raised when the backend answers 404 Not Found, that is when the requested resource does not exist.
+ */
+public class NotFoundException extends ClientRequestException {
+
+	public NotFoundException(final String message) {
+		super(message);
+	}
+}
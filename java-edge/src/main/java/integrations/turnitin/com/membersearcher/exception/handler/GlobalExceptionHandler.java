@@ -1,6 +1,9 @@
 package integrations.turnitin.com.membersearcher.exception.handler;
 
 import integrations.turnitin.com.membersearcher.exception.ClientRequestException;
+import integrations.turnitin.com.membersearcher.exception.InvalidRequestException;
+import integrations.turnitin.com.membersearcher.exception.NotFoundException;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -12,24 +15,55 @@ import java.util.HashMap;
 import java.util.Map;
 
 @ControllerAdvice
+@Profile("!reactive")
 public class GlobalExceptionHandler {
 
   /**
-   * Handles exceptions of type `ClientRequestException` that may occur in the application's controllers.
+   * Handles exceptions of type `ClientRequestException` that may occur in the application's controllers, raised when
+   * a call to the backend fails, times out, is rejected by the concurrency limit or is answered with an error.
    * <p>
-   * @param e        the `TrackUserException` instance that was thrown
+   * @param e        the `ClientRequestException` instance that was thrown
    * @param request  the `WebRequest` object containing information about the current request
-   * @return a `ResponseEntity` containing an `ErrorResponse` object with the appropriate HTTP status and error details
+   * @return a `ResponseEntity` containing the error details with a 502 Bad Gateway status, so that the failure is
+   *         neither taken nor cached as the resource not existing
    */
   @ExceptionHandler(value = ClientRequestException.class)
   public ResponseEntity<Object> handleTrackUserException(final ClientRequestException e, final WebRequest request) {
+    return errorResponse(HttpStatus.BAD_GATEWAY, e, request);
+  }
+
+  /**
+   * Handles exceptions of type `NotFoundException`, raised when the backend answers that the requested resource does not exist.
+   * <p>
+   * @param e        the `NotFoundException` instance that was thrown
+   * @param request  the `WebRequest` object containing information about the current request
+   * @return a `ResponseEntity` containing the error details with a 404 Not Found status
+   */
+  @ExceptionHandler(value = NotFoundException.class)
+  public ResponseEntity<Object> handleNotFoundException(final NotFoundException e, final WebRequest request) {
+    return errorResponse(HttpStatus.NOT_FOUND, e, request);
+  }
+
+  /**
+   * Handles exceptions of type `InvalidRequestException`, raised when a request parameter such as a page cursor is malformed.
+   * <p>
+   * @param e        the `InvalidRequestException` instance that was thrown
+   * @param request  the `WebRequest` object containing information about the current request
+   * @return a `ResponseEntity` containing the error details with a 400 Bad Request status
+   */
+  @ExceptionHandler(value = InvalidRequestException.class)
+  public ResponseEntity<Object> handleInvalidRequestException(final InvalidRequestException e, final WebRequest request) {
+    return errorResponse(HttpStatus.BAD_REQUEST, e, request);
+  }
+
+  private ResponseEntity<Object> errorResponse(final HttpStatus status, final RuntimeException e, final WebRequest request) {
     final Map<String, Object> body = new HashMap<>();
     body.put("timestamp", LocalDateTime.now());
-    body.put("status", HttpStatus.NOT_FOUND.value());
-    body.put("error", "Not Found");
+    body.put("status", status.value());
+    body.put("error", status.getReasonPhrase());
     body.put("message", e.getMessage());
     body.put("path", request.getDescription(false));
 
-    return new ResponseEntity<>(body, HttpStatus.NOT_FOUND);
+    return new ResponseEntity<>(body, status);
   }
 }
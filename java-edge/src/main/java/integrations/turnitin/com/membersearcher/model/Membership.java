@@ -1,31 +1,60 @@
 package integrations.turnitin.com.membersearcher.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 
+/**
+ * A membership of a user in a course.
+ * <p>
+ * Cached rosters hold millions of memberships, so ids that are canonical UUIDs are packed into two longs
+ * each (see {@link Uuids}) rather than kept as strings, and roles are shared through {@link Roles}. The
+ * JSON representation is unchanged: ids are formatted back to strings when serialized.
+ */
+@JsonPropertyOrder({"id", "role", "user", "user_id"})
 public class Membership {
 
-  private String id;
-
-  @JsonProperty("user_id")
-  private String userId;
+  private long idHigh;
+  private long idLow;
+  private long userIdHigh;
+  private long userIdLow;
+  private String idText;
+  private String userIdText;
   private String role;
   private User user;
+  private boolean idPacked;
+  private boolean userIdPacked;
 
   public String getId() {
-    return id;
+    return idPacked ? Uuids.format(idHigh, idLow) : idText;
   }
 
   public Membership setId(final String id) {
-    this.id = id;
+    idPacked = Uuids.isCanonical(id);
+    if (idPacked) {
+      idHigh = Uuids.high(id);
+      idLow = Uuids.low(id);
+      idText = null;
+    } else {
+      idText = id;
+    }
     return this;
   }
 
+  @JsonProperty("user_id")
   public String getUserId() {
-    return userId;
+    return userIdPacked ? Uuids.format(userIdHigh, userIdLow) : userIdText;
   }
 
+  @JsonProperty("user_id")
   public Membership setUserId(final String userId) {
-    this.userId = userId;
+    userIdPacked = Uuids.isCanonical(userId);
+    if (userIdPacked) {
+      userIdHigh = Uuids.high(userId);
+      userIdLow = Uuids.low(userId);
+      userIdText = null;
+    } else {
+      userIdText = userId;
+    }
     return this;
   }
 
@@ -34,7 +63,7 @@ public class Membership {
   }
 
   public Membership setRole(final String role) {
-    this.role = role;
+    this.role = Roles.intern(role);
     return this;
   }
 
@@ -46,4 +75,56 @@ public class Membership {
     this.user = user;
     return this;
   }
+
+  /**
+   * Copies this membership, ids as packed, with another user. Memberships read from cached backend pages are shared
+   * with the snapshots built from them, so a join copies them rather than setting their user.
+   *
+   * @param user the user of the copy
+   * @return the copy
+   */
+  public Membership withUser(final User user) {
+    final Membership copy = new Membership();
+    copy.idHigh = idHigh;
+    copy.idLow = idLow;
+    copy.userIdHigh = userIdHigh;
+    copy.userIdLow = userIdLow;
+    copy.idText = idText;
+    copy.userIdText = userIdText;
+    copy.role = role;
+    copy.idPacked = idPacked;
+    copy.userIdPacked = userIdPacked;
+    copy.user = user;
+    return copy;
+  }
+
+  /**
+   * @return whether the id is a packed UUID, available through {@link #idHigh()} and {@link #idLow()}
+   */
+  public boolean hasPackedId() {
+    return idPacked;
+  }
+
+  public long idHigh() {
+    return idHigh;
+  }
+
+  public long idLow() {
+    return idLow;
+  }
+
+  /**
+   * @return whether the user id is a packed UUID, available through {@link #userIdHigh()} and {@link #userIdLow()}
+   */
+  public boolean hasPackedUserId() {
+    return userIdPacked;
+  }
+
+  public long userIdHigh() {
+    return userIdHigh;
+  }
+
+  public long userIdLow() {
+    return userIdLow;
+  }
 }
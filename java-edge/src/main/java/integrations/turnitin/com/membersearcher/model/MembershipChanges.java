@@ -0,0 +1,62 @@
+package integrations.turnitin.com.membersearcher.model;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class MembershipChanges {
+
+	@JsonProperty("previous_version")
+	private String previousVersion;
+
+	private String version;
+
+	private List<Membership> upserted;
+
+	private List<String> removed;
+
+	public String getPreviousVersion() {
+		return previousVersion;
+	}
+
+	public MembershipChanges setPreviousVersion(final String previousVersion) {
+		this.previousVersion = previousVersion;
+		return this;
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	public MembershipChanges setVersion(final String version) {
+		this.version = version;
+		return this;
+	}
+
+	public List<Membership> getUpserted() {
+		return upserted;
+	}
+
+	public MembershipChanges setUpserted(final List<Membership> upserted) {
+		this.upserted = upserted;
+		return this;
+	}
+
+	public List<String> getRemoved() {
+		return removed;
+	}
+
+	public MembershipChanges setRemoved(final List<String> removed) {
+		this.removed = removed;
+		return this;
+	}
+
+	/**
+	 * @return whether no membership was added, changed or removed
+	 */
+	@JsonIgnore
+	public boolean isEmpty() {
+		return upserted.isEmpty() && removed.isEmpty();
+	}
+}
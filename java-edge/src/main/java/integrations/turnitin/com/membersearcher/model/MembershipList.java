@@ -1,10 +1,13 @@
 package integrations.turnitin.com.membersearcher.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.util.List;
 
 public class MembershipList {
 
 	private List<Membership> memberships;
+	private String version;
 
 	public List<Membership> getMemberships() {
 		return memberships;
@@ -14,4 +17,18 @@ public class MembershipList {
 		this.memberships = memberships;
 		return this;
 	}
+
+	/**
+	 * @return the version of the memberships, set when they are published as a snapshot, or null
+	 */
+	@JsonIgnore
+	public String getVersion() {
+		return version;
+	}
+
+	@JsonIgnore
+	public MembershipList setVersion(final String version) {
+		this.version = version;
+		return this;
+	}
 }
@@ -0,0 +1,31 @@
+package integrations.turnitin.com.membersearcher.model;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class MembershipPage {
+
+	private List<Membership> memberships;
+
+	@JsonProperty("next_cursor")
+	private String nextCursor;
+
+	public List<Membership> getMemberships() {
+		return memberships;
+	}
+
+	public MembershipPage setMemberships(final List<Membership> memberships) {
+		this.memberships = memberships;
+		return this;
+	}
+
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public MembershipPage setNextCursor(final String nextCursor) {
+		this.nextCursor = nextCursor;
+		return this;
+	}
+}
@@ -0,0 +1,45 @@
+package integrations.turnitin.com.membersearcher.model;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The dictionary of membership roles.
+ * <p>
+ * Every membership of a roster holds one of a handful of roles, but each one is parsed into its own
+ * string. Interning them through this dictionary makes every membership share a single instance per
+ * role. Roles are free text, so the dictionary stops growing at {@value #MAX_ROLES} entries; any
+ * further role is kept as received.
+ */
+public final class Roles {
+
+  private static final int MAX_ROLES = 1024;
+  private static final ConcurrentMap<String, String> DICTIONARY = new ConcurrentHashMap<>();
+
+  static {
+    intern("instructor");
+    intern("student");
+  }
+
+  private Roles() {
+  }
+
+  /**
+   * @param role the role as received, may be null
+   * @return the shared instance of the role
+   */
+  public static String intern(final String role) {
+    if (role == null) {
+      return null;
+    }
+    final String interned = DICTIONARY.get(role);
+    if (interned != null) {
+      return interned;
+    }
+    if (DICTIONARY.size() >= MAX_ROLES) {
+      return role;
+    }
+    final String previous = DICTIONARY.putIfAbsent(role, role);
+    return previous != null ? previous : role;
+  }
+}
@@ -0,0 +1,79 @@
+package integrations.turnitin.com.membersearcher.model;
+
+/**
+ * A change to a membership or user, as reported by the change feed of the php-backend service.
+ * An upsert carries the current membership or user; a delete only its id.
+ */
+public class RosterChange {
+
+	public static final String MEMBERSHIPS = "memberships";
+	public static final String USERS = "users";
+	public static final String UPSERT = "upsert";
+	public static final String DELETE = "delete";
+
+	private long seq;
+
+	private String entity;
+
+	private String op;
+
+	private String id;
+
+	private Membership membership;
+
+	private User user;
+
+	public long getSeq() {
+		return seq;
+	}
+
+	public RosterChange setSeq(final long seq) {
+		this.seq = seq;
+		return this;
+	}
+
+	public String getEntity() {
+		return entity;
+	}
+
+	public RosterChange setEntity(final String entity) {
+		this.entity = entity;
+		return this;
+	}
+
+	public String getOp() {
+		return op;
+	}
+
+	public RosterChange setOp(final String op) {
+		this.op = op;
+		return this;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public RosterChange setId(final String id) {
+		this.id = id;
+		return this;
+	}
+
+	public Membership getMembership() {
+		return membership;
+	}
+
+	public RosterChange setMembership(final Membership membership) {
+		this.membership = membership;
+		return this;
+	}
+
+	public User getUser() {
+		return user;
+	}
+
+	public RosterChange setUser(final User user) {
+		this.user = user;
+		return this;
+	}
+}
@@ -0,0 +1,53 @@
+package integrations.turnitin.com.membersearcher.model;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class RosterChangePage {
+
+	private List<RosterChange> changes;
+
+	private long cursor;
+
+	@JsonProperty("has_more")
+	private boolean hasMore;
+
+	private boolean reset;
+
+	public List<RosterChange> getChanges() {
+		return changes;
+	}
+
+	public RosterChangePage setChanges(final List<RosterChange> changes) {
+		this.changes = changes;
+		return this;
+	}
+
+	public long getCursor() {
+		return cursor;
+	}
+
+	public RosterChangePage setCursor(final long cursor) {
+		this.cursor = cursor;
+		return this;
+	}
+
+	public boolean hasMore() {
+		return hasMore;
+	}
+
+	public RosterChangePage setHasMore(final boolean hasMore) {
+		this.hasMore = hasMore;
+		return this;
+	}
+
+	public boolean isReset() {
+		return reset;
+	}
+
+	public RosterChangePage setReset(final boolean reset) {
+		this.reset = reset;
+		return this;
+	}
+}
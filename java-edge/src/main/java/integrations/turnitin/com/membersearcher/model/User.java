@@ -1,17 +1,33 @@
 package integrations.turnitin.com.membersearcher.model;
 
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * A user; an id that is a canonical UUID is packed into two longs, as in {@link Membership}.
+ */
+@JsonPropertyOrder({"id", "name", "email"})
 public class User {
 
-	private String id;
+	private long idHigh;
+	private long idLow;
+	private String idText;
 	private String name;
 	private String email;
+	private boolean idPacked;
 
 	public String getId() {
-		return id;
+		return idPacked ? Uuids.format(idHigh, idLow) : idText;
 	}
 
 	public User setId(final String id) {
-		this.id = id;
+		idPacked = Uuids.isCanonical(id);
+		if (idPacked) {
+			idHigh = Uuids.high(id);
+			idLow = Uuids.low(id);
+			idText = null;
+		} else {
+			idText = id;
+		}
 		return this;
 	}
 
@@ -32,4 +48,19 @@ public class User {
 		this.email = email;
 		return this;
 	}
+
+	/**
+	 * @return whether the id is a packed UUID, available through {@link #idHigh()} and {@link #idLow()}
+	 */
+	public boolean hasPackedId() {
+		return idPacked;
+	}
+
+	public long idHigh() {
+		return idHigh;
+	}
+
+	public long idLow() {
+		return idLow;
+	}
 }
@@ -0,0 +1,31 @@
+package integrations.turnitin.com.membersearcher.model;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class UserPage {
+
+	private List<User> users;
+
+	@JsonProperty("next_cursor")
+	private String nextCursor;
+
+	public List<User> getUsers() {
+		return users;
+	}
+
+	public UserPage setUsers(final List<User> users) {
+		this.users = users;
+		return this;
+	}
+
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public UserPage setNextCursor(final String nextCursor) {
+		this.nextCursor = nextCursor;
+		return this;
+	}
+}
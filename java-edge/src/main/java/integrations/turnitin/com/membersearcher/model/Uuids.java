@@ -0,0 +1,109 @@
+package integrations.turnitin.com.membersearcher.model;
+
+/**
+ * Packs canonical UUID strings into two longs and back.
+ * <p>
+ * Only the canonical lowercase form, as written by Postgres, is packed, so that formatting a packed id
+ * gives back exactly the string that was received. Any other id is kept as a string by the model. For
+ * canonical ids, comparing the packed halves as unsigned longs orders them as their strings would be.
+ */
+public final class Uuids {
+
+  private static final int LENGTH = 36;
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private Uuids() {
+  }
+
+  /**
+   * @param id the id to check, may be null
+   * @return whether the id is a canonical lowercase UUID, which can be packed without loss
+   */
+  public static boolean isCanonical(final String id) {
+    if (id == null || id.length() != LENGTH) {
+      return false;
+    }
+    for (int i = 0; i < LENGTH; i++) {
+      final char c = id.charAt(i);
+      if (isDashPosition(i) ? c != '-' : digit(c) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param id a canonical UUID
+   * @return its most significant 64 bits
+   */
+  public static long high(final String id) {
+    return parse(id, 0, 8) << 32 | parse(id, 9, 13) << 16 | parse(id, 14, 18);
+  }
+
+  /**
+   * @param id a canonical UUID
+   * @return its least significant 64 bits
+   */
+  public static long low(final String id) {
+    return parse(id, 19, 23) << 48 | parse(id, 24, 36);
+  }
+
+  /**
+   * @param high the most significant 64 bits
+   * @param low  the least significant 64 bits
+   * @return the canonical lowercase UUID string
+   */
+  public static String format(final long high, final long low) {
+    final char[] chars = new char[LENGTH];
+    write(chars, 0, 8, high >>> 32);
+    chars[8] = '-';
+    write(chars, 9, 13, high >>> 16);
+    chars[13] = '-';
+    write(chars, 14, 18, high);
+    chars[18] = '-';
+    write(chars, 19, 23, low >>> 48);
+    chars[23] = '-';
+    write(chars, 24, 36, low);
+    return new String(chars);
+  }
+
+  /**
+   * Compares two packed UUIDs in the order of their canonical strings.
+   *
+   * @return a negative number, zero or a positive number as the first id is less than, equal to or greater than the second
+   */
+  public static int compare(final long high, final long low, final long otherHigh, final long otherLow) {
+    final int byHigh = Long.compareUnsigned(high, otherHigh);
+    return byHigh != 0 ? byHigh : Long.compareUnsigned(low, otherLow);
+  }
+
+  private static boolean isDashPosition(final int index) {
+    return index == 8 || index == 13 || index == 18 || index == 23;
+  }
+
+  private static int digit(final char c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    }
+    if (c >= 'a' && c <= 'f') {
+      return c - 'a' + 10;
+    }
+    return -1;
+  }
+
+  private static long parse(final String id, final int from, final int to) {
+    long value = 0;
+    for (int i = from; i < to; i++) {
+      value = value << 4 | digit(id.charAt(i));
+    }
+    return value;
+  }
+
+  private static void write(final char[] chars, final int from, final int to, final long value) {
+    long remaining = value;
+    for (int i = to - 1; i >= from; i--) {
+      chars[i] = HEX[(int) (remaining & 0xF)];
+      remaining >>>= 4;
+    }
+  }
+}
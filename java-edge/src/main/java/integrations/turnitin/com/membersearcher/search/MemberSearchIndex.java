@@ -0,0 +1,163 @@
+package integrations.turnitin.com.membersearcher.search;
+
+import integrations.turnitin.com.membersearcher.model.Membership;
+import integrations.turnitin.com.membersearcher.model.MembershipList;
+import integrations.turnitin.com.membersearcher.model.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A case-insensitive substring index over the user name and email of every membership in a {@link MembershipList}.
+ * <p>
+ * Names and emails are case-folded once at build time and split into trigrams, each mapping to the sorted
+ * positions of the memberships containing it. A query of three or more characters intersects the postings
+ * of its trigrams, smallest first, and only verifies the surviving candidates; shorter queries fall back to
+ * scanning the pre-folded keys. Results keep the order of the source list.
+ */
+public final class MemberSearchIndex {
+
+  private static final int GRAM_LENGTH = 3;
+  private static final char FIELD_SEPARATOR = '\u0000';
+
+  private final MembershipList source;
+  private final List<Membership> memberships;
+  private final String[] keys;
+  private final Map<String, int[]> postings;
+
+  private MemberSearchIndex(final MembershipList source, final String[] keys, final Map<String, int[]> postings) {
+    this.source = source;
+    this.memberships = source.getMemberships();
+    this.keys = keys;
+    this.postings = postings;
+  }
+
+  /**
+   * Builds an index over the given memberships. Memberships without a user are never matched.
+   *
+   * @param source the memberships to index
+   * @return the built index
+   */
+  public static MemberSearchIndex build(final MembershipList source) {
+    final List<Membership> memberships = source.getMemberships();
+    final String[] keys = new String[memberships.size()];
+    final Map<String, PostingsBuilder> builders = new HashMap<>();
+
+    for (int position = 0; position < keys.length; position++) {
+      final User user = memberships.get(position).getUser();
+      if (user == null) {
+        continue;
+      }
+      final String name = fold(user.getName());
+      final String email = fold(user.getEmail());
+      keys[position] = name + FIELD_SEPARATOR + email;
+      addGrams(builders, name, position);
+      addGrams(builders, email, position);
+    }
+
+    final Map<String, int[]> postings = new HashMap<>(builders.size() * 4 / 3 + 1);
+    builders.forEach((gram, builder) -> postings.put(gram, builder.toArray()));
+    return new MemberSearchIndex(source, keys, postings);
+  }
+
+  /**
+   * @param memberships a membership list
+   * @return true if this index was built from exactly that list instance
+   */
+  public boolean isBuiltFrom(final MembershipList memberships) {
+    return source == memberships;
+  }
+
+  /**
+   * Finds the memberships whose user name or email contains the query, ignoring case.
+   * A blank query matches every membership.
+   *
+   * @param query the text to search for
+   * @return the matching memberships, in source order
+   */
+  public List<Membership> search(final String query) {
+    final String folded = fold(query).trim();
+    if (folded.isEmpty()) {
+      return memberships;
+    }
+    if (folded.length() < GRAM_LENGTH) {
+      return scan(folded);
+    }
+
+    final List<int[]> lists = new ArrayList<>();
+    for (int start = 0; start + GRAM_LENGTH <= folded.length(); start++) {
+      final int[] list = postings.get(folded.substring(start, start + GRAM_LENGTH));
+      if (list == null) {
+        return Collections.emptyList();
+      }
+      lists.add(list);
+    }
+    lists.sort(Comparator.comparingInt(list -> list.length));
+
+    final List<Membership> matches = new ArrayList<>();
+    for (final int position : lists.get(0)) {
+      if (containsAll(lists, position) && keys[position].contains(folded)) {
+        matches.add(memberships.get(position));
+      }
+    }
+    return matches;
+  }
+
+  private List<Membership> scan(final String folded) {
+    final List<Membership> matches = new ArrayList<>();
+    for (int position = 0; position < keys.length; position++) {
+      if (keys[position] != null && keys[position].contains(folded)) {
+        matches.add(memberships.get(position));
+      }
+    }
+    return matches;
+  }
+
+  private static boolean containsAll(final List<int[]> lists, final int position) {
+    for (int i = 1; i < lists.size(); i++) {
+      if (Arrays.binarySearch(lists.get(i), position) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void addGrams(final Map<String, PostingsBuilder> builders, final String field, final int position) {
+    for (int start = 0; start + GRAM_LENGTH <= field.length(); start++) {
+      builders.computeIfAbsent(field.substring(start, start + GRAM_LENGTH), gram -> new PostingsBuilder()).add(position);
+    }
+  }
+
+  private static String fold(final String value) {
+    return value == null ? "" : value.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * A growable, sorted and de-duplicated list of positions, filled in increasing position order.
+   */
+  private static final class PostingsBuilder {
+
+    private int[] positions = new int[4];
+    private int size;
+
+    private void add(final int position) {
+      if (size > 0 && positions[size - 1] == position) {
+        return;
+      }
+      if (size == positions.length) {
+        positions = Arrays.copyOf(positions, size * 2);
+      }
+      positions[size++] = position;
+    }
+
+    private int[] toArray() {
+      return Arrays.copyOf(positions, size);
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package integrations.turnitin.com.membersearcher.service;
+
+import integrations.turnitin.com.membersearcher.model.Membership;
+import integrations.turnitin.com.membersearcher.model.User;
+import integrations.turnitin.com.membersearcher.model.Uuids;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The in-memory hash join of memberships with their users, as performed by {@link MembershipService}.
+ */
+public final class MembershipJoiner {
+
+  /**
+   * Orders memberships by id as {@link String#compareTo} would, comparing packed ids without formatting them.
+   */
+  static final Comparator<Membership> BY_ID = (first, second) -> {
+    if (first.hasPackedId() && second.hasPackedId()) {
+      return Uuids.compare(first.idHigh(), first.idLow(), second.idHigh(), second.idLow());
+    }
+    return Comparator.nullsFirst(Comparator.<String>naturalOrder()).compare(first.getId(), second.getId());
+  };
+
+  private MembershipJoiner() {
+  }
+
+  /**
+   * Indexes users by id, the build side of the join.
+   * When several users share an id, the last one wins.
+   *
+   * @param users the users to index
+   * @return the users, by id
+   */
+  public static UserLookupTable indexUsers(final List<User> users) {
+    final UserLookupTable userTable = new UserLookupTable(users.size());
+    users.forEach(userTable::put);
+    return userTable;
+  }
+
+  /**
+   * Associates each membership with its user, if known, and returns the memberships ordered by id.
+   * The joined memberships are copies: revalidated backend pages hand back the same memberships to every load,
+   * so setting their users in place would change the snapshots already built from them while they are served.
+   * The returned list is unmodifiable as it is shared by every request served from a snapshot.
+   *
+   * @param memberships the memberships to join, left as they are
+   * @param userTable   the users, by id
+   * @return the joined memberships, ordered by id
+   */
+  public static List<Membership> join(final List<Membership> memberships, final UserLookupTable userTable) {
+    final List<Membership> joined = new ArrayList<>(memberships.size());
+    memberships.forEach(membership -> joined.add(membership.withUser(userTable.get(membership))));
+
+    return ordered(joined);
+  }
+
+  /**
+   * Returns memberships that already hold their users, such as those joined by the backend, ordered by id.
+   * Each membership then holds its own copy of its user; the copies of a user are replaced by one shared instance,
+   * as in the result of {@link #join}, in copies of their memberships so that the memberships given are left as
+   * they are.
+   * The returned list is unmodifiable as it is shared by every request served from a snapshot.
+   *
+   * @param memberships the memberships with their users, left as they are
+   * @return the memberships, ordered by id
+   */
+  public static List<Membership> joined(final List<Membership> memberships) {
+    final UserLookupTable userTable = new UserLookupTable(0);
+    final List<Membership> joined = new ArrayList<>(memberships.size());
+    memberships.forEach(membership -> {
+      final User shared = membership.getUser() == null ? null : userTable.get(membership);
+      if (membership.getUser() != null && shared == null) {
+        userTable.put(membership.getUser());
+      }
+      joined.add(shared == null ? membership : membership.withUser(shared));
+    });
+    return ordered(joined);
+  }
+
+  private static List<Membership> ordered(final List<Membership> memberships) {
+    memberships.sort(BY_ID);
+    return Collections.unmodifiableList(memberships);
+  }
+}
@@ -1,61 +1,701 @@
 package integrations.turnitin.com.membersearcher.service;
 
+import integrations.turnitin.com.membersearcher.cache.Snapshot;
+import integrations.turnitin.com.membersearcher.cache.SnapshotCache;
 import integrations.turnitin.com.membersearcher.client.MembershipBackendClient;
+import integrations.turnitin.com.membersearcher.config.MembershipProperties;
+import integrations.turnitin.com.membersearcher.config.PushSchedulingConfig;
+import integrations.turnitin.com.membersearcher.exception.InvalidRequestException;
+import integrations.turnitin.com.membersearcher.model.Membership;
+import integrations.turnitin.com.membersearcher.model.MembershipChanges;
 import integrations.turnitin.com.membersearcher.model.MembershipList;
+import integrations.turnitin.com.membersearcher.model.MembershipPage;
 import integrations.turnitin.com.membersearcher.model.User;
 import integrations.turnitin.com.membersearcher.model.UserList;
+import integrations.turnitin.com.membersearcher.model.Uuids;
+import integrations.turnitin.com.membersearcher.search.MemberSearchIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 @Service
+@Profile("!reactive")
 public class MembershipService {
 
   private static final Logger log = Logger.getLogger(MembershipService.class.getSimpleName());
 
   private final MembershipBackendClient membershipBackendClient;
+  private final Duration cacheTtl;
+  private final SnapshotCache<MembershipList> snapshotCache;
+  private final Map<String, SnapshotCache<MembershipList>> courseSnapshotCaches;
+  private final boolean streamingJoin;
+  private final double batchLookupRatio;
+  private final int batchLookupMaxIds;
+  private final boolean joinInBackend;
+  private final boolean deltaSync;
+  private final WarmStartFile warmStartFile;
+  private final RosterReplica rosterReplica = new RosterReplica();
+  private final Set<Consumer<? super MembershipChanges>> subscribers = ConcurrentHashMap.newKeySet();
+  private final Timer joinTimer;
+  private final DistributionSummary joinedMemberships;
+  private final DistributionSummary joinedUsers;
+  private final Counter fetchFallbacks;
+  private final Counter unchangedLoads;
+  private final Timer deltaTimer;
+  private final DistributionSummary deltaChanges;
+  private final Counter resyncs;
+  private final Counter pushedChanges;
+  private volatile MemberSearchIndex searchIndex;
+  private volatile long modifiedResponsesAtSnapshot = -1;
+  private volatile long knownUserCount = -1;
+  private volatile boolean preferFullScan;
+  private volatile MembershipList pushed;
 
   /**
    * Constructor.
    * @param membershipBackendClient the membershipBackendClient
+   * @param properties              the {@code membership.*} settings of the cache and the join
+   * @param warmStartFile           the file the snapshot is saved to, and served from on startup
+   * @param meterRegistry           the registry receiving the join, snapshot and fallback metrics
    */
-  public MembershipService(final MembershipBackendClient membershipBackendClient) {
+  public MembershipService(final MembershipBackendClient membershipBackendClient,
+                           final MembershipProperties properties,
+                           final WarmStartFile warmStartFile,
+                           final MeterRegistry meterRegistry) {
     this.membershipBackendClient = membershipBackendClient;
+    this.cacheTtl = properties.cache().ttl();
+    this.streamingJoin = properties.join().streaming();
+    this.batchLookupRatio = properties.join().batchLookupRatio();
+    this.batchLookupMaxIds = properties.join().batchLookupMaxIds();
+    this.joinInBackend = properties.join().inBackend();
+    this.deltaSync = properties.deltaSync().enabled();
+    this.warmStartFile = warmStartFile;
+    this.snapshotCache = new SnapshotCache<>(this::loadAndSave, cacheTtl);
+    this.courseSnapshotCaches = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, SnapshotCache<MembershipList>> eldest) {
+        return size() > properties.courseCache().maxCourses();
+      }
+    };
+
+    this.joinTimer = Timer.builder("membership.join")
+        .description("Time spent joining users onto memberships and indexing the snapshot")
+        .register(meterRegistry);
+    this.joinedMemberships = DistributionSummary.builder("membership.join.records")
+        .description("Records taking part in a join")
+        .tag("type", "memberships")
+        .register(meterRegistry);
+    this.joinedUsers = DistributionSummary.builder("membership.join.records")
+        .description("Records taking part in a join")
+        .tag("type", "users")
+        .register(meterRegistry);
+    this.fetchFallbacks = Counter.builder("membership.fetch.fallback")
+        .description("Requests answered with an empty membership list because the backend fetch failed")
+        .register(meterRegistry);
+    this.unchangedLoads = Counter.builder("membership.snapshot.unchanged")
+        .description("Snapshot loads that found the backend data unchanged and kept the current snapshot")
+        .register(meterRegistry);
+    this.deltaTimer = Timer.builder("membership.delta.apply")
+        .description("Time spent applying backend changes to the roster replica and indexing the snapshot")
+        .register(meterRegistry);
+    this.deltaChanges = DistributionSummary.builder("membership.delta.changes")
+        .description("Backend changes applied to the roster replica by a snapshot load")
+        .register(meterRegistry);
+    this.resyncs = Counter.builder("membership.delta.resyncs")
+        .description("Full loads filling the roster replica, at startup or when the change feed was pruned")
+        .register(meterRegistry);
+    this.pushedChanges = Counter.builder("membership.push.changes")
+        .description("Memberships added, changed or removed in the changes pushed to the subscribers")
+        .register(meterRegistry);
+    registerSnapshotMetrics(meterRegistry);
+    warmStartFile.load(Instant.now()).ifPresent(this::warmStart);
   }
 
   /**
    * Method to fetch all memberships with their associated user details included.
-   * This method calls out to the php-backend service and fetches all memberships,
-   * it then calls to fetch all users in one request and associates them with their
-   * corresponding membership.
+   * The joined list is served from an in-memory snapshot; see {@link SnapshotCache} for how
+   * and when it is refreshed from the php-backend service.
    *
    * @return A CompletableFuture containing a fully populated MembershipList object.
    */
   public CompletableFuture<MembershipList> fetchAllMembershipsWithUsers() {
-    final var membershipsFuture = membershipBackendClient.fetchMemberships();
-    final var usersFuture = membershipBackendClient.fetchUsers();
-
-    return membershipsFuture.thenCombine(usersFuture, (memberships, users) -> {
-      final Map<String, User> userMap = users.getUsers().stream()
-           .collect(Collectors.toMap(User::getId, user -> user));
-
-      memberships.getMemberships().forEach(membership -> {
-        final User user = userMap.get(membership.getUserId());
-        if (user != null) {
-          membership.setUser(user);
-        }
-      });
-
-      return memberships;
-    }).exceptionally(ex -> {
+    return snapshotCache.get().exceptionally(ex -> {
       // Log the exception
       log.warning("Error fetching memberships or users: " + ex.getMessage());
+      fetchFallbacks.increment();
       // Handle the error scenario
       return new MembershipList().setMemberships(Collections.emptyList()); // Returning an empty MembershipList at this moment
     });
   }
+
+  /**
+   * Method to fetch the memberships of one course with their associated user details included.
+   * Each course has its own snapshot, loaded from the memberships of that course and the users they reference
+   * only, so serving a course costs work in proportion to the course rather than to every membership. The
+   * snapshots of the most recently requested courses are kept, up to {@code membership.course-cache.max-courses}.
+   *
+   * @param courseId the id of the course, a UUID
+   * @return A CompletableFuture containing a MembershipList object with the memberships of the course.
+   * @throws InvalidRequestException if the course id is not a UUID
+   */
+  public CompletableFuture<MembershipList> fetchCourseMembershipsWithUsers(final String courseId) {
+    final String id = courseId == null ? null : courseId.toLowerCase(Locale.ROOT);
+    if (!Uuids.isCanonical(id)) {
+      throw new InvalidRequestException("Invalid course id: " + courseId);
+    }
+    return courseSnapshotCache(id).get().exceptionally(ex -> {
+      log.warning("Error fetching the memberships or users of course " + id + ": " + ex.getMessage());
+      fetchFallbacks.increment();
+      return new MembershipList().setMemberships(Collections.emptyList());
+    });
+  }
+
+  /**
+   * Method to fetch one page of memberships with their associated user details included.
+   * Pages are cut from the id-ordered snapshot using keyset pagination: the cursor encodes
+   * the id of the last membership of the previous page, so a page stays stable even when
+   * memberships before it are added or removed between requests.
+   *
+   * @param cursor the opaque cursor returned with the previous page, or null for the first page
+   * @param limit  the maximum number of memberships in the page
+   * @return A CompletableFuture containing a MembershipPage with the memberships and the cursor of the next page, if any.
+   * @throws InvalidRequestException if the limit is not positive or the cursor is malformed
+   */
+  public CompletableFuture<MembershipPage> fetchMembershipsPage(final String cursor, final int limit) {
+    if (limit < 1) {
+      throw new InvalidRequestException("The page limit must be positive");
+    }
+    final String afterId = cursor == null || cursor.isEmpty() ? null : decodeCursor(cursor);
+
+    return fetchAllMembershipsWithUsers()
+        .thenApply(memberships -> page(memberships.getMemberships(), afterId, limit));
+  }
+
+  /**
+   * Method to search the memberships by the name or email of their user, ignoring case.
+   * The search runs against a {@link MemberSearchIndex} built once per snapshot, so a query
+   * only touches the memberships sharing its trigrams rather than every member.
+   *
+   * @param query the text to look for in the user name or email; a blank query matches every membership
+   * @return A CompletableFuture containing a MembershipList object with the matching memberships.
+   */
+  public CompletableFuture<MembershipList> searchMembershipsWithUsers(final String query) {
+    return fetchAllMembershipsWithUsers()
+        .thenApply(memberships -> new MembershipList().setMemberships(searchIndexFor(memberships).search(query)));
+  }
+
+  /**
+   * Returns the version of a membership list, used as the entity tag of its representation.
+   * The version is a digest of the content, so the same data has the same version on every edge
+   * instance and across restarts. A snapshot is versioned once, when it is published, and carries its version,
+   * so serving it costs no digest and takes no lock; only a list that was never published, such as the empty
+   * fallback list, is digested here.
+   *
+   * @param memberships the membership list, usually a snapshot
+   * @return the version of the list, as a hex string
+   */
+  public String versionOf(final MembershipList memberships) {
+    final String version = memberships.getVersion();
+    return version != null ? version : digest(memberships);
+  }
+
+  /**
+   * Subscribes to the changes of the roster, as found by {@link #pushChanges()}.
+   * The subscriber is called on the thread pushing the changes, so it should hand slow work off.
+   *
+   * @param subscriber receives each batch of changes, shared by every subscriber and not to be modified
+   * @return unsubscribes the subscriber; may be run more than once
+   */
+  public Runnable subscribe(final Consumer<? super MembershipChanges> subscriber) {
+    subscribers.add(subscriber);
+    return () -> subscribers.remove(subscriber);
+  }
+
+  /**
+   * Refreshes the snapshot and pushes the memberships added, changed or removed since the previous push to every
+   * subscriber. Runs every {@code membership.push.interval}, on a single thread, so however many subscribers there
+   * are, the backend is polled once per interval; see {@link PushSchedulingConfig}. The refresh is shared with any
+   * load already in flight, and revalidates the backend pages with conditional requests. Nothing is polled while
+   * there are no subscribers.
+   */
+  public void pushChanges() {
+    if (subscribers.isEmpty()) {
+      pushed = null;
+      return;
+    }
+    final MembershipList current;
+    try {
+      current = snapshotCache.refresh().join();
+    } catch (final CompletionException | CancellationException ex) {
+      log.warning("Error refreshing the memberships to push: " + ex.getMessage());
+      return;
+    }
+    final MembershipList previous = pushed;
+    pushed = current;
+    if (previous == null || previous == current) {
+      return;
+    }
+    final MembershipChanges changes = RosterDiff.between(previous.getMemberships(), current.getMemberships());
+    if (changes.isEmpty()) {
+      return;
+    }
+    changes.setPreviousVersion(versionOf(previous)).setVersion(versionOf(current));
+    pushedChanges.increment(changes.getUpserted().size() + changes.getRemoved().size());
+    for (final Consumer<? super MembershipChanges> subscriber : subscribers) {
+      subscriber.accept(changes);
+    }
+  }
+
+  /**
+   * @return the cache holding the joined membership snapshot, exposed for its hit/miss/refresh counters.
+   */
+  public SnapshotCache<MembershipList> getSnapshotCache() {
+    return snapshotCache;
+  }
+
+  /**
+   * @param courseId the id of a course, in canonical form
+   * @return the snapshot cache of the course, created if the course is not cached yet
+   */
+  private SnapshotCache<MembershipList> courseSnapshotCache(final String courseId) {
+    synchronized (courseSnapshotCaches) {
+      return courseSnapshotCaches.computeIfAbsent(courseId,
+          id -> new SnapshotCache<>(() -> loadCourseMembershipsWithUsers(id), cacheTtl));
+    }
+  }
+
+  /**
+   * Loads a fresh joined snapshot of one course: its memberships, then the users they reference, looked up by id.
+   * With the join in the backend, the memberships come with their users instead.
+   *
+   * @param courseId the id of the course
+   * @return A CompletableFuture containing a fully populated MembershipList object.
+   */
+  private CompletableFuture<MembershipList> loadCourseMembershipsWithUsers(final String courseId) {
+    if (joinInBackend) {
+      return membershipBackendClient.fetchCourseMembershipsWithUsers(courseId)
+          .thenApply(course -> versioned(new MembershipList().setMemberships(MembershipJoiner.joined(course.getMemberships()))));
+    }
+    return membershipBackendClient.fetchCourseMemberships(courseId).thenCompose(course -> {
+      final List<Membership> memberships = course.getMemberships();
+      final Set<String> userIds = distinctUserIds(memberships);
+      final CompletableFuture<List<User>> users = userIds.isEmpty()
+          ? CompletableFuture.completedFuture(List.of())
+          : membershipBackendClient.fetchUsersByIds(userIds).thenApply(UserList::getUsers);
+      return users.thenApply(found -> versioned(new MembershipList()
+          .setMemberships(MembershipJoiner.join(memberships, MembershipJoiner.indexUsers(found)))));
+    });
+  }
+
+  /**
+   * Serves the roster saved by a previous run until the first refresh replaces it. The snapshot keeps the age of
+   * the saved roster, so it is refreshed in the background once it is older than the cache TTL rather than every
+   * restarted instance loading everything from the backend at once. With delta sync, the replica continues from
+   * the cursor the roster was saved at.
+   *
+   * @param warmStart the saved roster
+   */
+  private void warmStart(final WarmStartFile.WarmStart warmStart) {
+    final MembershipList snapshot = publish(MembershipJoiner.joined(warmStart.memberships()));
+    if (snapshotCache.seed(snapshot, Instant.ofEpochMilli(warmStart.savedAt())) && deltaSync && warmStart.cursor() >= 0) {
+      rosterReplica.reset(snapshot.getMemberships(), warmStart.cursor());
+    }
+  }
+
+  /**
+   * Loads a fresh joined snapshot and, when it differs from the current one, saves it to the warm start file in
+   * the background.
+   *
+   * @return A CompletableFuture containing a fully populated MembershipList object.
+   */
+  private CompletableFuture<MembershipList> loadAndSave() {
+    final Optional<MembershipList> previous = snapshotCache.getSnapshot().map(Snapshot::getValue);
+    return loadMembershipsWithUsers().thenApply(snapshot -> {
+      if (warmStartFile.isEnabled() && (previous.isEmpty() || previous.get() != snapshot)) {
+        final long cursor = deltaSync ? rosterReplica.getCursor() : -1;
+        final Instant loadedAt = Instant.now();
+        CompletableFuture.runAsync(() -> warmStartFile.save(snapshot.getMemberships(), cursor, loadedAt));
+      }
+      return snapshot;
+    });
+  }
+
+  /**
+   * Loads a fresh joined snapshot.
+   * This method calls out to the php-backend service and fetches all memberships, then the users
+   * they reference, and associates each user with their corresponding membership.
+   * <p>
+   * Users are looked up by id in batches when the memberships reference only a small share of
+   * all users, and fetched in one full scan otherwise. Until a full scan has revealed how many users
+   * exist, the batch lookup is used for up to {@code batchLookupMaxIds} users. Once the memberships are
+   * known to need a full scan, later loads fetch both lists concurrently.
+   * <p>
+   * The backend pages are revalidated with conditional requests. When every response of the load was
+   * 304 Not Modified, the data is the same as that of the current snapshot, which is kept as is.
+   * <p>
+   * With the join in the backend, the memberships are fetched with their users instead, in one request per page.
+   * With delta sync enabled, the snapshot is instead refreshed from the change feed; see {@link #loadFromChanges()}.
+   *
+   * @return A CompletableFuture containing a fully populated MembershipList object.
+   */
+  private CompletableFuture<MembershipList> loadMembershipsWithUsers() {
+    if (deltaSync) {
+      return loadFromChanges();
+    }
+    if (joinInBackend) {
+      return membershipBackendClient.fetchMembershipsWithUsers()
+          .thenApply(joined -> unchangedSnapshot().orElseGet(() -> toSnapshot(joined.getMemberships())));
+    }
+    return fetchMembershipsAndUsers()
+        .thenApply(fetched -> unchangedSnapshot().orElseGet(() -> toSnapshot(fetched.memberships(), fetched.users())));
+  }
+
+  /**
+   * @return the current snapshot if every backend response since it was loaded was 304 Not Modified, so the data is
+   *         the same; empty otherwise, in which case the responses of the current load are taken as the new baseline
+   */
+  private Optional<MembershipList> unchangedSnapshot() {
+    final long modifiedResponses = membershipBackendClient.getModifiedResponses();
+    final Optional<MembershipList> current = snapshotCache.getSnapshot().map(Snapshot::getValue);
+    if (current.isPresent() && modifiedResponses == modifiedResponsesAtSnapshot) {
+      unchangedLoads.increment();
+      return current;
+    }
+    modifiedResponsesAtSnapshot = modifiedResponses;
+    return Optional.empty();
+  }
+
+  /**
+   * Loads a snapshot by applying the changes made since the previous load to the {@link RosterReplica}, so the
+   * cost of a load follows the number of changed memberships and users rather than the size of the roster.
+   * When nothing changed the current snapshot is kept as is. The replica is filled by a full load first, and
+   * again whenever the change feed no longer holds every change since the previous load.
+   *
+   * @return A CompletableFuture containing a fully populated MembershipList object.
+   */
+  private CompletableFuture<MembershipList> loadFromChanges() {
+    if (!rosterReplica.isInitialized()) {
+      return resyncReplica();
+    }
+    return membershipBackendClient.fetchChanges(rosterReplica.getCursor()).thenCompose(feed -> {
+      if (feed.isReset()) {
+        return resyncReplica();
+      }
+      final Optional<MembershipList> current = snapshotCache.getSnapshot().map(Snapshot::getValue);
+      if (feed.getChanges().isEmpty() && current.isPresent()) {
+        unchangedLoads.increment();
+        return CompletableFuture.completedFuture(current.get());
+      }
+
+      final Set<String> missingUserIds = rosterReplica.missingUserIds(feed.getChanges());
+      final CompletableFuture<List<User>> missingUsers = missingUserIds.isEmpty()
+          ? CompletableFuture.completedFuture(List.of())
+          : membershipBackendClient.fetchUsersByIds(missingUserIds).thenApply(UserList::getUsers);
+      return missingUsers.thenApply(users -> {
+        deltaChanges.record(feed.getChanges().size());
+        return deltaTimer.record(() -> publish(rosterReplica.apply(feed.getChanges(), users, feed.getCursor())));
+      });
+    });
+  }
+
+  /**
+   * Fills the replica with a full load. The cursor of the change feed is taken before the load starts, so changes
+   * made during the load are applied again by the next load rather than missed; applying a change twice is harmless.
+   *
+   * @return A CompletableFuture containing a fully populated MembershipList object.
+   */
+  private CompletableFuture<MembershipList> resyncReplica() {
+    resyncs.increment();
+    return membershipBackendClient.fetchChanges(null)
+        .thenCompose(head -> fetchSnapshot().thenApply(snapshot -> {
+          rosterReplica.reset(snapshot.getMemberships(), head.getCursor());
+          return snapshot;
+        }));
+  }
+
+  private CompletableFuture<MembershipList> fetchSnapshot() {
+    if (joinInBackend) {
+      return membershipBackendClient.fetchMembershipsWithUsers().thenApply(joined -> toSnapshot(joined.getMemberships()));
+    }
+    return fetchMembershipsAndUsers().thenApply(fetched -> toSnapshot(fetched.memberships(), fetched.users()));
+  }
+
+  private CompletableFuture<Fetched> fetchMembershipsAndUsers() {
+    if (preferFullScan) {
+      final var membershipsFuture = fetchAllMemberships();
+      final var usersFuture = fetchAllUsers();
+
+      return membershipsFuture.thenCombine(usersFuture, (memberships, userTable) -> {
+        recordFullScan(distinctUserIds(memberships).size(), userTable.size());
+        return new Fetched(memberships, userTable);
+      });
+    }
+
+    return fetchAllMemberships().thenCompose(memberships -> {
+      final Set<String> userIds = distinctUserIds(memberships);
+      if (userIds.isEmpty()) {
+        return CompletableFuture.completedFuture(new Fetched(memberships, new UserLookupTable(0)));
+      }
+      if (useBatchLookup(userIds.size())) {
+        return membershipBackendClient.fetchUsersByIds(userIds)
+            .thenApply(users -> new Fetched(memberships, MembershipJoiner.indexUsers(users.getUsers())));
+      }
+      return fetchAllUsers().thenApply(userTable -> {
+        recordFullScan(userIds.size(), userTable.size());
+        return new Fetched(memberships, userTable);
+      });
+    });
+  }
+
+  /**
+   * Fetches every membership, streaming them from the backend in streaming join mode.
+   *
+   * @return A CompletableFuture containing the memberships.
+   */
+  private CompletableFuture<List<Membership>> fetchAllMemberships() {
+    if (streamingJoin) {
+      final List<Membership> memberships = new ArrayList<>();
+      return membershipBackendClient.streamMemberships(memberships::add).thenApply(done -> memberships);
+    }
+    return membershipBackendClient.fetchMemberships().thenApply(MembershipList::getMemberships);
+  }
+
+  /**
+   * Fetches every user, streaming them from the backend straight into the lookup table in streaming join mode.
+   *
+   * @return A CompletableFuture containing the users, by id.
+   */
+  private CompletableFuture<UserLookupTable> fetchAllUsers() {
+    if (streamingJoin) {
+      final UserLookupTable userTable = new UserLookupTable(knownUserCount < 0 ? 0 : (int) knownUserCount);
+      return membershipBackendClient.streamUsers(userTable::put).thenApply(done -> userTable);
+    }
+    return membershipBackendClient.fetchUsers().thenApply(users -> MembershipJoiner.indexUsers(users.getUsers()));
+  }
+
+  private static Set<String> distinctUserIds(final List<Membership> memberships) {
+    final Set<String> userIds = new LinkedHashSet<>();
+    memberships.forEach(membership -> {
+      if (membership.getUserId() != null) {
+        userIds.add(membership.getUserId());
+      }
+    });
+    return userIds;
+  }
+
+  private boolean useBatchLookup(final int distinctUserIds) {
+    final long userCount = knownUserCount;
+    return batchLookupMaxIds > 0
+        && distinctUserIds <= batchLookupMaxIds
+        && (userCount < 0 || distinctUserIds <= userCount * batchLookupRatio);
+  }
+
+  private void recordFullScan(final int distinctUserIds, final int userCount) {
+    knownUserCount = userCount;
+    preferFullScan = !useBatchLookup(distinctUserIds);
+  }
+
+  /**
+   * Associates each membership with its user and freezes the result into a snapshot.
+   * The snapshot is ordered by membership id for pagination, and unmodifiable as it is
+   * shared by every request served from it.
+   *
+   * @param memberships the memberships fetched from the backend
+   * @param userTable   the users fetched from the backend, by id
+   * @return the joined snapshot
+   */
+  private MembershipList toSnapshot(final List<Membership> memberships, final UserLookupTable userTable) {
+    joinedMemberships.record(memberships.size());
+    joinedUsers.record(userTable.size());
+
+    return joinTimer.record(() -> publish(MembershipJoiner.join(memberships, userTable)));
+  }
+
+  /**
+   * Freezes memberships joined with their users by the backend into a snapshot.
+   *
+   * @param joined the memberships fetched from the backend, with their users
+   * @return the joined snapshot
+   */
+  private MembershipList toSnapshot(final List<Membership> joined) {
+    joinedMemberships.record(joined.size());
+
+    return joinTimer.record(() -> publish(MembershipJoiner.joined(joined)));
+  }
+
+  /**
+   * Wraps joined memberships into a snapshot, indexed for search and versioned up front so that no request
+   * served from it pays for either.
+   *
+   * @param joined the memberships, ordered by id and joined with their users
+   * @return the snapshot
+   */
+  private MembershipList publish(final List<Membership> joined) {
+    final MembershipList membershipList = new MembershipList().setMemberships(joined);
+    searchIndexFor(membershipList);
+    return versioned(membershipList);
+  }
+
+  /**
+   * Sets the version of a snapshot before it is published, on the thread loading it.
+   *
+   * @param snapshot the snapshot, not yet shared
+   * @return the snapshot
+   */
+  private static MembershipList versioned(final MembershipList snapshot) {
+    return snapshot.setVersion(digest(snapshot));
+  }
+
+  private void registerSnapshotMetrics(final MeterRegistry meterRegistry) {
+    FunctionCounter.builder("membership.snapshot.requests", snapshotCache, SnapshotCache::getHits)
+        .description("Requests served from the membership snapshot")
+        .tag("result", "hit")
+        .register(meterRegistry);
+    FunctionCounter.builder("membership.snapshot.requests", snapshotCache, SnapshotCache::getMisses)
+        .description("Requests served from the membership snapshot")
+        .tag("result", "miss")
+        .register(meterRegistry);
+    FunctionCounter.builder("membership.snapshot.refreshes", snapshotCache, SnapshotCache::getRefreshes)
+        .description("Loads of the membership snapshot from the backend")
+        .register(meterRegistry);
+    FunctionCounter.builder("membership.snapshot.refresh.failures", snapshotCache, SnapshotCache::getRefreshFailures)
+        .description("Failed loads of the membership snapshot")
+        .register(meterRegistry);
+    Gauge.builder("membership.course.snapshots", courseSnapshotCaches, caches -> {
+          synchronized (caches) {
+            return caches.size();
+          }
+        })
+        .description("Course snapshots currently cached")
+        .register(meterRegistry);
+    Gauge.builder("membership.push.subscribers", subscribers, Set::size)
+        .description("Subscribers to the roster changes")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Returns the search index of the given snapshot, building it if the snapshot has changed since the last search.
+   *
+   * @param memberships the snapshot to search
+   * @return the index built from that snapshot
+   */
+  private MemberSearchIndex searchIndexFor(final MembershipList memberships) {
+    MemberSearchIndex index = searchIndex;
+    if (index == null || !index.isBuiltFrom(memberships)) {
+      index = MemberSearchIndex.build(memberships);
+      searchIndex = index;
+    }
+    return index;
+  }
+
+  /**
+   * Cuts the page of memberships following the given id out of an id-ordered list.
+   *
+   * @param memberships the memberships, ordered by id
+   * @param afterId     the id of the last membership of the previous page, or null for the first page
+   * @param limit       the maximum number of memberships in the page
+   * @return the page, with a next cursor if more memberships follow it
+   */
+  private static MembershipPage page(final List<Membership> memberships, final String afterId, final int limit) {
+    final int from = afterId == null ? 0 : firstIndexAfter(memberships, afterId);
+    final int to = (int) Math.min((long) from + limit, memberships.size());
+    final String nextCursor = to < memberships.size() ? encodeCursor(memberships.get(to - 1).getId()) : null;
+
+    return new MembershipPage()
+        .setMemberships(memberships.subList(from, to))
+        .setNextCursor(nextCursor);
+  }
+
+  private static int firstIndexAfter(final List<Membership> memberships, final String afterId) {
+    int low = 0;
+    int high = memberships.size();
+    while (low < high) {
+      final int middle = (low + high) >>> 1;
+      final String id = memberships.get(middle).getId();
+      if (id != null && id.compareTo(afterId) > 0) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+    return low;
+  }
+
+  private static String encodeCursor(final String id) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(id.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String decodeCursor(final String cursor) {
+    try {
+      return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    } catch (final IllegalArgumentException ex) {
+      throw new InvalidRequestException("Malformed page cursor: " + cursor, ex);
+    }
+  }
+
+  /**
+   * Digests every field of the representation of the memberships, in order.
+   */
+  private static String digest(final MembershipList memberships) {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException ex) {
+      throw new IllegalStateException("SHA-256 is not available", ex);
+    }
+    for (final Membership membership : memberships.getMemberships()) {
+      update(digest, membership.getId());
+      update(digest, membership.getUserId());
+      update(digest, membership.getRole());
+      final User user = membership.getUser();
+      if (user != null) {
+        update(digest, user.getId());
+        update(digest, user.getName());
+        update(digest, user.getEmail());
+      }
+      digest.update((byte) '\n');
+    }
+    return HexFormat.of().formatHex(digest.digest(), 0, 16);
+  }
+
+  private static void update(final MessageDigest digest, final String value) {
+    if (value != null) {
+      digest.update(value.getBytes(StandardCharsets.UTF_8));
+    }
+    digest.update((byte) (value == null ? 1 : 0));
+  }
+
+  /**
+   * The memberships and users fetched from the backend for a load, before they are joined.
+   */
+  private record Fetched(List<Membership> memberships, UserLookupTable users) {
+  }
 }
@@ -0,0 +1,76 @@
+package integrations.turnitin.com.membersearcher.service;
+
+import integrations.turnitin.com.membersearcher.client.ReactiveMembershipBackendClient;
+import integrations.turnitin.com.membersearcher.model.Membership;
+import integrations.turnitin.com.membersearcher.model.MembershipList;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Reactive counterpart of {@link MembershipService}, active with the {@code reactive} profile.
+ * <p>
+ * The memberships are joined as they stream in rather than from a materialized snapshot: the users are
+ * indexed by id first, then each membership is emitted with its user as soon as it is received from the
+ * php-backend service. Only the user index is held in memory; the memberships flow through with backpressure.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveMembershipService {
+
+  private static final Logger log = Logger.getLogger(ReactiveMembershipService.class.getSimpleName());
+
+  private final ReactiveMembershipBackendClient membershipBackendClient;
+
+  /**
+   * Constructor.
+   * @param membershipBackendClient the reactive membershipBackendClient
+   */
+  public ReactiveMembershipService(final ReactiveMembershipBackendClient membershipBackendClient) {
+    this.membershipBackendClient = membershipBackendClient;
+  }
+
+  /**
+   * Streams all memberships, ordered by id, with their associated user details included.
+   * Like {@link MembershipService#fetchAllMembershipsWithUsers()}, a backend call failing before the first
+   * membership is emitted is logged and ends the stream empty instead of failing the request. Once memberships have
+   * been emitted the error is passed on, so that a roster cut short is never taken for a complete one.
+   *
+   * @return A Flux emitting each membership with its user, as soon as the membership has been received.
+   */
+  public Flux<Membership> streamMembershipsWithUsers() {
+    return Flux.defer(() -> {
+      final AtomicBoolean emitted = new AtomicBoolean();
+      return membershipBackendClient.streamUsers()
+          .collectList()
+          .map(MembershipJoiner::indexUsers)
+          .flatMapMany(userTable -> membershipBackendClient.streamMemberships()
+              .map(membership -> membership.setUser(userTable.get(membership))))
+          .doOnNext(membership -> emitted.set(true))
+          .onErrorResume(ex -> {
+            if (emitted.get()) {
+              log.warning("Error fetching memberships after the first were sent: " + ex.getMessage());
+              return Flux.error(ex);
+            }
+            log.warning("Error fetching memberships or users: " + ex.getMessage());
+            return Flux.empty();
+          });
+    });
+  }
+
+  /**
+   * Method to fetch all memberships with their associated user details included, as a single list.
+   * The list fails rather than being cut short when the backend fails partway through the memberships.
+   *
+   * @return A Mono containing a fully populated MembershipList object.
+   */
+  public Mono<MembershipList> fetchAllMembershipsWithUsers() {
+    return streamMembershipsWithUsers()
+        .collectList()
+        .map(memberships -> new MembershipList().setMemberships(memberships));
+  }
+}
@@ -0,0 +1,77 @@
+package integrations.turnitin.com.membersearcher.service;
+
+import integrations.turnitin.com.membersearcher.model.Membership;
+import integrations.turnitin.com.membersearcher.model.MembershipChanges;
+import integrations.turnitin.com.membersearcher.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Compares two joined snapshots of the roster, both ordered by membership id, in a single merge pass.
+ */
+public final class RosterDiff {
+
+  private RosterDiff() {
+  }
+
+  /**
+   * Lists the memberships added, changed or removed between two snapshots. A membership counts as changed when
+   * its role or user id differs, or when the name or email of its user does.
+   *
+   * @param previous the memberships of the earlier snapshot, ordered by id
+   * @param current  the memberships of the later snapshot, ordered by id
+   * @return the changes, with the added and changed memberships as upserted and the ids of the others as removed;
+   *         the versions are left for the caller to set
+   */
+  public static MembershipChanges between(final List<Membership> previous, final List<Membership> current) {
+    final List<Membership> upserted = new ArrayList<>();
+    final List<String> removed = new ArrayList<>();
+
+    int before = 0;
+    int after = 0;
+    while (before < previous.size() || after < current.size()) {
+      final int order = before == previous.size() ? 1
+          : after == current.size() ? -1
+          : MembershipJoiner.BY_ID.compare(previous.get(before), current.get(after));
+      if (order < 0) {
+        removed.add(previous.get(before++).getId());
+      } else if (order > 0) {
+        upserted.add(current.get(after++));
+      } else {
+        if (!sameContent(previous.get(before++), current.get(after))) {
+          upserted.add(current.get(after));
+        }
+        after++;
+      }
+    }
+    return new MembershipChanges().setUpserted(upserted).setRemoved(removed);
+  }
+
+  /**
+   * Compares the content of two memberships, without taking the same instance to mean the same content: the
+   * snapshots only share memberships whose content they both hold, but the comparison does not depend on it.
+   */
+  private static boolean sameContent(final Membership previous, final Membership current) {
+    return Objects.equals(previous.getRole(), current.getRole())
+        && sameUserId(previous, current)
+        && sameContent(previous.getUser(), current.getUser());
+  }
+
+  private static boolean sameUserId(final Membership previous, final Membership current) {
+    if (previous.hasPackedUserId() && current.hasPackedUserId()) {
+      return previous.userIdHigh() == current.userIdHigh() && previous.userIdLow() == current.userIdLow();
+    }
+    return Objects.equals(previous.getUserId(), current.getUserId());
+  }
+
+  private static boolean sameContent(final User previous, final User current) {
+    if (previous == null || current == null) {
+      return previous == current;
+    }
+    return Objects.equals(previous.getId(), current.getId())
+        && Objects.equals(previous.getName(), current.getName())
+        && Objects.equals(previous.getEmail(), current.getEmail());
+  }
+}
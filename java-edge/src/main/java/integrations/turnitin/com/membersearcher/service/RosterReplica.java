@@ -0,0 +1,165 @@
+package integrations.turnitin.com.membersearcher.service;
+
+import integrations.turnitin.com.membersearcher.model.Membership;
+import integrations.turnitin.com.membersearcher.model.RosterChange;
+import integrations.turnitin.com.membersearcher.model.User;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An in-memory replica of the joined roster, kept up to date with the change feed of the php-backend service
+ * rather than by fetching every membership and user again.
+ * <p>
+ * The replica holds the memberships ordered by id, joined with their users, and those users by id. A batch of
+ * changes is merged into the ordered memberships in a single pass, and only the memberships that changed, or whose
+ * user changed, are parsed or joined. The lists handed out are never modified afterwards: a membership whose user
+ * changed is copied rather than updated in place.
+ */
+public final class RosterReplica {
+
+  private List<Membership> memberships = List.of();
+  private UserLookupTable users = new UserLookupTable(0);
+  private long cursor = -1;
+
+  /**
+   * @return whether the replica has been filled by {@link #reset}
+   */
+  public synchronized boolean isInitialized() {
+    return cursor >= 0;
+  }
+
+  /**
+   * @return the cursor of the last change applied, from which the change feed is followed
+   */
+  public synchronized long getCursor() {
+    return cursor;
+  }
+
+  /**
+   * Replaces the content of the replica with a freshly joined roster.
+   *
+   * @param joined the memberships, ordered by id and joined with their users
+   * @param cursor the cursor of the change feed taken before the roster was fetched
+   */
+  public synchronized void reset(final List<Membership> joined, final long cursor) {
+    final UserLookupTable userTable = new UserLookupTable(0);
+    joined.forEach(membership -> {
+      if (membership.getUser() != null) {
+        userTable.put(membership.getUser());
+      }
+    });
+    this.memberships = joined;
+    this.users = userTable;
+    this.cursor = cursor;
+  }
+
+  /**
+   * Returns the ids of the users that changed memberships reference but that neither the replica nor the
+   * changes hold. They must be fetched and passed to {@link #apply} along with the changes.
+   *
+   * @param changes the changes about to be applied
+   * @return the ids of the missing users
+   */
+  public synchronized Set<String> missingUserIds(final List<RosterChange> changes) {
+    final UserLookupTable changedUsers = new UserLookupTable(0);
+    changes.stream()
+        .filter(change -> RosterChange.USERS.equals(change.getEntity()) && RosterChange.UPSERT.equals(change.getOp()))
+        .forEach(change -> changedUsers.put(change.getUser()));
+
+    final Set<String> missing = new LinkedHashSet<>();
+    changes.stream()
+        .filter(change -> RosterChange.MEMBERSHIPS.equals(change.getEntity()) && RosterChange.UPSERT.equals(change.getOp()))
+        .map(RosterChange::getMembership)
+        .filter(membership -> membership.getUserId() != null && users.get(membership) == null && changedUsers.get(membership) == null)
+        .forEach(membership -> missing.add(membership.getUserId()));
+    return missing;
+  }
+
+  /**
+   * Applies changes to the replica, in the order they were made.
+   *
+   * @param changes      the changes
+   * @param fetchedUsers the users fetched for {@link #missingUserIds}
+   * @param cursor       the cursor of the change feed after the last of the changes
+   * @return the memberships, ordered by id and joined with their users; the list is unmodifiable
+   */
+  public synchronized List<Membership> apply(final List<RosterChange> changes, final List<User> fetchedUsers, final long cursor) {
+    fetchedUsers.forEach(users::put);
+
+    final Map<String, RosterChange> membershipChanges = new HashMap<>();
+    final UserLookupTable changedUserIds = new UserLookupTable(0);
+    for (final RosterChange change : changes) {
+      if (RosterChange.MEMBERSHIPS.equals(change.getEntity())) {
+        membershipChanges.put(change.getId(), change);
+      } else if (RosterChange.USERS.equals(change.getEntity())) {
+        if (RosterChange.UPSERT.equals(change.getOp())) {
+          users.put(change.getUser());
+        } else {
+          users.remove(change.getId());
+        }
+        changedUserIds.put(new User().setId(change.getId()));
+      }
+    }
+
+    final List<Touched> touched = new ArrayList<>(membershipChanges.size());
+    membershipChanges.values().forEach(change -> {
+      if (RosterChange.UPSERT.equals(change.getOp())) {
+        final Membership membership = change.getMembership();
+        touched.add(new Touched(membership, membership.withUser(users.get(membership))));
+      } else {
+        touched.add(new Touched(new Membership().setId(change.getId()), null));
+      }
+    });
+    touched.sort((first, second) -> MembershipJoiner.BY_ID.compare(first.key(), second.key()));
+
+    final List<Membership> merged = new ArrayList<>(memberships.size() + touched.size());
+    int next = 0;
+    for (final Membership membership : memberships) {
+      while (next < touched.size() && MembershipJoiner.BY_ID.compare(touched.get(next).key(), membership) < 0) {
+        touched.get(next++).addTo(merged);
+      }
+      if (next < touched.size() && MembershipJoiner.BY_ID.compare(touched.get(next).key(), membership) == 0) {
+        touched.get(next++).addTo(merged);
+      } else if (changedUserIds.size() > 0 && changedUserIds.get(membership) != null) {
+        merged.add(rejoin(membership));
+      } else {
+        merged.add(membership);
+      }
+    }
+    while (next < touched.size()) {
+      touched.get(next++).addTo(merged);
+    }
+
+    this.memberships = Collections.unmodifiableList(merged);
+    this.cursor = cursor;
+    return memberships;
+  }
+
+  /**
+   * Copies a membership, joined with the current version of its user.
+   */
+  private Membership rejoin(final Membership membership) {
+    return membership.withUser(users.get(membership));
+  }
+
+  /**
+   * A membership affected by a batch of changes.
+   *
+   * @param key         a membership with the id of the affected membership
+   * @param replacement the new version of the membership, or null if it was deleted
+   */
+  private record Touched(Membership key, Membership replacement) {
+
+    void addTo(final List<Membership> memberships) {
+      if (replacement != null) {
+        memberships.add(replacement);
+      }
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package integrations.turnitin.com.membersearcher.service;
+
+import integrations.turnitin.com.membersearcher.model.Membership;
+import integrations.turnitin.com.membersearcher.model.User;
+import integrations.turnitin.com.membersearcher.model.Uuids;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Users by id, the build side of the membership/user join.
+ * <p>
+ * Users with a packed UUID id are held in an open-addressing hash table with linear probing, keyed by the
+ * two halves of the id in parallel {@code long} arrays, so a lookup neither boxes nor formats the id. Users
+ * with any other id fall back to a plain map. Adding a user whose id is already present replaces it.
+ * Not thread-safe: a table is filled by one thread, then only read, or only used while holding a lock.
+ */
+public final class UserLookupTable {
+
+  private static final int MIN_CAPACITY = 16;
+
+  private long[] highs;
+  private long[] lows;
+  private User[] users;
+  private int packedSize;
+  private final Map<String, User> fallback = new HashMap<>();
+
+  /**
+   * Creates an empty table.
+   *
+   * @param expectedSize the number of users expected, to size the table up front
+   */
+  public UserLookupTable(final int expectedSize) {
+    allocate(capacityFor(expectedSize));
+  }
+
+  /**
+   * Adds a user, replacing any user with the same id.
+   *
+   * @param user the user to add
+   */
+  public void put(final User user) {
+    if (!user.hasPackedId()) {
+      fallback.put(user.getId(), user);
+      return;
+    }
+    if ((packedSize + 1) * 2 > users.length) {
+      resize();
+    }
+    final int slot = slotOf(user.idHigh(), user.idLow());
+    if (users[slot] == null) {
+      highs[slot] = user.idHigh();
+      lows[slot] = user.idLow();
+      packedSize++;
+    }
+    users[slot] = user;
+  }
+
+  /**
+   * Removes the user with the given id, if present.
+   * The entries following it in its probe sequence are shifted back into the freed slot, so lookups
+   * never stop short of them and no tombstones accumulate.
+   *
+   * @param id the id of the user to remove
+   */
+  public void remove(final String id) {
+    if (!Uuids.isCanonical(id)) {
+      fallback.remove(id);
+      return;
+    }
+    final int mask = users.length - 1;
+    int slot = slotOf(Uuids.high(id), Uuids.low(id));
+    if (users[slot] == null) {
+      return;
+    }
+    int next = (slot + 1) & mask;
+    while (users[next] != null) {
+      final int home = hash(highs[next], lows[next]) & mask;
+      // The entry may move back unless its home slot lies after the freed one
+      if (((next - home) & mask) >= ((next - slot) & mask)) {
+        highs[slot] = highs[next];
+        lows[slot] = lows[next];
+        users[slot] = users[next];
+        slot = next;
+      }
+      next = (next + 1) & mask;
+    }
+    users[slot] = null;
+    packedSize--;
+  }
+
+  /**
+   * @param membership the membership whose user to look up
+   * @return the user the membership references, or null if it is unknown or the membership has no user id
+   */
+  public User get(final Membership membership) {
+    if (membership.hasPackedUserId()) {
+      return users[slotOf(membership.userIdHigh(), membership.userIdLow())];
+    }
+    final String userId = membership.getUserId();
+    return userId == null ? null : fallback.get(userId);
+  }
+
+  /**
+   * @return the number of distinct user ids in the table
+   */
+  public int size() {
+    return packedSize + fallback.size();
+  }
+
+  /**
+   * Finds the slot holding the given id, or the empty slot where it belongs.
+   */
+  private int slotOf(final long high, final long low) {
+    final int mask = users.length - 1;
+    int slot = hash(high, low) & mask;
+    while (users[slot] != null && (highs[slot] != high || lows[slot] != low)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void resize() {
+    final long[] oldHighs = highs;
+    final long[] oldLows = lows;
+    final User[] oldUsers = users;
+    allocate(oldUsers.length * 2);
+    for (int i = 0; i < oldUsers.length; i++) {
+      if (oldUsers[i] != null) {
+        final int slot = slotOf(oldHighs[i], oldLows[i]);
+        highs[slot] = oldHighs[i];
+        lows[slot] = oldLows[i];
+        users[slot] = oldUsers[i];
+      }
+    }
+  }
+
+  private void allocate(final int capacity) {
+    highs = new long[capacity];
+    lows = new long[capacity];
+    users = new User[capacity];
+  }
+
+  /**
+   * @return the smallest power of two keeping the load factor at or below one half
+   */
+  private static int capacityFor(final int expectedSize) {
+    final int minimum = Math.max(MIN_CAPACITY, expectedSize * 2);
+    return minimum > 1 << 30 ? 1 << 30 : Integer.highestOneBit(minimum - 1) << 1;
+  }
+
+  private static int hash(final long high, final long low) {
+    long h = high * 0x9E3779B97F4A7C15L ^ low;
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+}
@@ -0,0 +1,127 @@
+package integrations.turnitin.com.membersearcher.service;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import integrations.turnitin.com.membersearcher.client.MembershipBackendClient;
+import integrations.turnitin.com.membersearcher.exception.InvalidRequestException;
+import integrations.turnitin.com.membersearcher.exception.NotFoundException;
+import integrations.turnitin.com.membersearcher.model.Uuids;
+import integrations.turnitin.com.membersearcher.model.User;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Looks up single users by id, through a bounded near cache in front of the php-backend service.
+ * <p>
+ * The cache holds at most {@code users.cache.max-size} users. Its eviction weighs how often each id has been asked
+ * for, not only how recently, so hot users stay cached while a scan over many cold ids passes through without
+ * flushing them. Users expire {@code users.cache.ttl} after they were fetched. Ids the backend does not know are
+ * cached as well, for the shorter {@code users.cache.negative-ttl}, so repeated lookups of an unknown id cost no
+ * backend calls either. A failed fetch is not cached, and concurrent lookups of the same id share one fetch.
+ * <p>
+ * The cache is monitored as {@code users} in the {@code cache.*} metrics, with its hit ratio in
+ * {@code cache.hit.ratio}.
+ */
+@Service
+@Profile("!reactive")
+public class UserService {
+
+  private static final String CACHE_NAME = "users";
+
+  private final AsyncLoadingCache<String, Optional<User>> users;
+
+  /**
+   * Constructor.
+   * @param membershipBackendClient the client fetching users from the backend
+   * @param maxSize                 the maximum number of users and unknown ids cached
+   * @param ttl                     how long a fetched user is served from the cache
+   * @param negativeTtl             how long an unknown id is remembered as unknown
+   * @param meterRegistry           the registry the cache metrics are registered with
+   */
+  @Autowired
+  public UserService(final MembershipBackendClient membershipBackendClient,
+                     @Value("${users.cache.max-size:10000}") final long maxSize,
+                     @Value("${users.cache.ttl:5m}") final Duration ttl,
+                     @Value("${users.cache.negative-ttl:30s}") final Duration negativeTtl,
+                     final MeterRegistry meterRegistry) {
+    this(membershipBackendClient, maxSize, ttl, negativeTtl, ForkJoinPool.commonPool(), meterRegistry);
+  }
+
+  /**
+   * Constructor.
+   * @param membershipBackendClient the client fetching users from the backend
+   * @param maxSize                 the maximum number of users and unknown ids cached
+   * @param ttl                     how long a fetched user is served from the cache
+   * @param negativeTtl             how long an unknown id is remembered as unknown
+   * @param executor                runs the eviction and expiry work of the cache
+   * @param meterRegistry           the registry the cache metrics are registered with
+   */
+  public UserService(final MembershipBackendClient membershipBackendClient, final long maxSize, final Duration ttl,
+                     final Duration negativeTtl, final Executor executor, final MeterRegistry meterRegistry) {
+    this.users = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .executor(executor)
+        .expireAfter(new Expiry<String, Optional<User>>() {
+          @Override
+          public long expireAfterCreate(final String userId, final Optional<User> user, final long currentTime) {
+            return (user.isPresent() ? ttl : negativeTtl).toNanos();
+          }
+
+          @Override
+          public long expireAfterUpdate(final String userId, final Optional<User> user, final long currentTime,
+                                        final long currentDuration) {
+            return expireAfterCreate(userId, user, currentTime);
+          }
+
+          @Override
+          public long expireAfterRead(final String userId, final Optional<User> user, final long currentTime,
+                                      final long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .recordStats()
+        .buildAsync((userId, loadExecutor) -> membershipBackendClient.fetchUser(userId)
+            .thenApply(Optional::of)
+            .exceptionally(ex -> {
+              if (ex instanceof NotFoundException || ex.getCause() instanceof NotFoundException) {
+                return Optional.empty();
+              }
+              throw ex instanceof CompletionException completion ? completion : new CompletionException(ex);
+            }));
+
+    CaffeineCacheMetrics.monitor(meterRegistry, users, CACHE_NAME);
+    Gauge.builder("cache.hit.ratio", users, cache -> cache.synchronous().stats().hitRate())
+        .description("Share of the lookups answered from the cache")
+        .tag("cache", CACHE_NAME)
+        .register(meterRegistry);
+  }
+
+  /**
+   * Fetches a user by id, from the cache when it holds the id.
+   *
+   * @param userId the id of the user, a UUID.
+   * @return A {@link CompletableFuture} containing the user, or failing with a {@link NotFoundException} when no
+   *     user has the id.
+   */
+  public CompletableFuture<User> fetchUser(final String userId) {
+    final String id = userId == null ? null : userId.toLowerCase(Locale.ROOT);
+    if (!Uuids.isCanonical(id)) {
+      throw new InvalidRequestException("Invalid user id: " + userId);
+    }
+    return users.get(id).thenApply(user -> user.orElseThrow(() -> new NotFoundException("No user with id " + id)));
+  }
+}
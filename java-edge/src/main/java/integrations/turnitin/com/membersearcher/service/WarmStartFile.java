@@ -0,0 +1,135 @@
+package integrations.turnitin.com.membersearcher.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import integrations.turnitin.com.membersearcher.config.MembershipProperties;
+import integrations.turnitin.com.membersearcher.model.Membership;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.logging.Logger;
+
+/**
+ * A local file holding the last joined roster, so that a restarted edge instance can serve it straight away
+ * instead of loading everything from the php-backend service before answering its first request.
+ * <p>
+ * The roster is written in CBOR, to a temporary file that then replaces the previous one in a single move, so a
+ * crash while saving never leaves a truncated file behind. On startup the file is read in one sequential pass
+ * and decoded into the snapshot; the speed-up comes from skipping the backend, not from how the file is read.
+ * A roster saved longer than {@code membership.warm-start.max-age} ago is ignored, as is a file that cannot be
+ * decoded. Without a {@code membership.warm-start.file} nothing is saved or loaded.
+ */
+@Component
+@Profile("!reactive")
+public class WarmStartFile {
+
+  private static final Logger log = Logger.getLogger(WarmStartFile.class.getSimpleName());
+
+  private final Path path;
+  private final Duration maxAge;
+  private final CBORMapper cborMapper = CBORMapper.builder()
+      .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+      .build();
+
+  /**
+   * Constructor.
+   * @param properties the {@code membership.*} settings, of which the {@code membership.warm-start.*} ones are used
+   */
+  @Autowired
+  public WarmStartFile(final MembershipProperties properties) {
+    this(properties.warmStart().file(), properties.warmStart().maxAge());
+  }
+
+  /**
+   * Constructor.
+   * @param file   the file holding the roster, or an empty string not to keep one
+   * @param maxAge the age beyond which a saved roster is not served on startup
+   */
+  public WarmStartFile(final String file, final Duration maxAge) {
+    this.path = file == null || file.isBlank() ? null : Path.of(file);
+    this.maxAge = maxAge;
+  }
+
+  /**
+   * @return whether a file is configured
+   */
+  public boolean isEnabled() {
+    return path != null;
+  }
+
+  /**
+   * Reads the saved roster, if there is one no older than the maximum age.
+   *
+   * @param now the current instant
+   * @return the saved roster, or empty if there is none, it is too old or it cannot be read
+   */
+  public Optional<WarmStart> load(final Instant now) {
+    if (path == null) {
+      return Optional.empty();
+    }
+    final WarmStart warmStart;
+    try (InputStream in = Files.newInputStream(path)) {
+      warmStart = cborMapper.readValue(in, WarmStart.class);
+    } catch (final NoSuchFileException ex) {
+      return Optional.empty();
+    } catch (final IOException | RuntimeException ex) {
+      log.warning("Ignoring unreadable warm start file " + path + ": " + ex.getMessage());
+      return Optional.empty();
+    }
+
+    final Instant savedAt = Instant.ofEpochMilli(warmStart.savedAt());
+    if (savedAt.plus(maxAge).isBefore(now)) {
+      log.info("Ignoring warm start file " + path + " saved at " + savedAt + ", older than " + maxAge);
+      return Optional.empty();
+    }
+    log.info("Warm start from " + path + ": " + warmStart.memberships().size() + " memberships saved at " + savedAt);
+    return Optional.of(warmStart);
+  }
+
+  /**
+   * Replaces the saved roster. Failures are logged rather than thrown, as the file only speeds up the next start.
+   *
+   * @param memberships the memberships, ordered by id and joined with their users
+   * @param cursor      the cursor of the change feed the memberships are up to date with, or -1 if unknown
+   * @param savedAt     the instant the memberships were loaded
+   */
+  public synchronized void save(final List<Membership> memberships, final long cursor, final Instant savedAt) {
+    if (path == null) {
+      return;
+    }
+    final Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    try {
+      if (path.getParent() != null) {
+        Files.createDirectories(path.getParent());
+      }
+      try (OutputStream out = Files.newOutputStream(temporary)) {
+        cborMapper.writeValue(out, new WarmStart(savedAt.toEpochMilli(), cursor, memberships));
+      }
+      Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (final IOException | RuntimeException ex) {
+      log.warning("Could not save warm start file " + path + ": " + ex.getMessage());
+    }
+  }
+
+  /**
+   * The content of the file.
+   *
+   * @param savedAt     the instant the memberships were loaded, in milliseconds since the epoch
+   * @param cursor      the cursor of the change feed the memberships are up to date with, or -1 if unknown
+   * @param memberships the memberships, ordered by id and joined with their users
+   */
+  public record WarmStart(long savedAt, long cursor, List<Membership> memberships) {
+  }
+}
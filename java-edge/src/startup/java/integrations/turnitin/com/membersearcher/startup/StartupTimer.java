@@ -0,0 +1,122 @@
+package integrations.turnitin.com.membersearcher.startup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long the java-edge service takes from launch to its first successful answer, for several ways of
+ * launching it, such as the plain fat jar and the AOT-processed application with a class data sharing archive.
+ * <p>
+ * Each variant is launched the given number of times, in turn, with the Java executable running this timer. The
+ * time runs from the launch of the process to the first 200 answer of the given URL, which is polled every few
+ * milliseconds. The process is then stopped before the next launch.
+ * <p>
+ * Arguments: the URL to poll, the number of launches per variant, then one {@code name=arg,arg,...} per variant
+ * listing the arguments passed to {@code java}.
+ */
+public final class StartupTimer {
+
+  private static final Duration POLL_INTERVAL = Duration.ofMillis(10);
+  private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(120);
+
+  private final HttpClient httpClient = HttpClient.newBuilder()
+      .connectTimeout(Duration.ofSeconds(1))
+      .build();
+  private final String java = ProcessHandle.current().info().command()
+      .orElse(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+
+  private StartupTimer() {
+  }
+
+  public static void main(final String... args) throws Exception {
+    if (args.length < 3) {
+      throw new IllegalArgumentException("Usage: StartupTimer <url> <runs> <name>=<java arg>,<java arg>... ...");
+    }
+    final URI url = URI.create(args[0]);
+    final int runs = Integer.parseInt(args[1]);
+    final StartupTimer timer = new StartupTimer();
+
+    final List<String> report = new ArrayList<>();
+    String baselineName = null;
+    long baseline = -1;
+    for (final String variant : Arrays.copyOfRange(args, 2, args.length)) {
+      final int separator = variant.indexOf('=');
+      final String name = variant.substring(0, separator);
+      final List<String> javaArgs = List.of(variant.substring(separator + 1).split(","));
+
+      final List<Long> millis = new ArrayList<>();
+      for (int run = 0; run < runs; run++) {
+        millis.add(timer.timeToFirstAnswer(javaArgs, url));
+        System.out.printf("%s run %d: %d ms%n", name, run + 1, millis.get(run));
+      }
+      Collections.sort(millis);
+      final long median = millis.get(millis.size() / 2);
+      if (baselineName == null) {
+        baselineName = name;
+        baseline = median;
+      }
+      report.add(String.format("%-12s median %6d ms   min %6d ms   %5.1f%% of %s",
+          name, median, millis.get(0), 100.0 * median / baseline, baselineName));
+    }
+
+    System.out.println();
+    System.out.println("Time to first successful " + url);
+    report.forEach(System.out::println);
+  }
+
+  /**
+   * Launches the service and waits for its first successful answer, then stops it.
+   *
+   * @param javaArgs the arguments passed to {@code java}
+   * @param url      the URL to poll
+   * @return the time from the launch to the first successful answer, in milliseconds
+   */
+  private long timeToFirstAnswer(final List<String> javaArgs, final URI url) throws IOException, InterruptedException {
+    final List<String> command = new ArrayList<>();
+    command.add(java);
+    command.addAll(javaArgs);
+
+    final long start = System.nanoTime();
+    final Process process = new ProcessBuilder(command)
+        .redirectErrorStream(true)
+        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+        .start();
+    try {
+      final long deadline = start + STARTUP_TIMEOUT.toNanos();
+      while (System.nanoTime() < deadline) {
+        if (!process.isAlive()) {
+          throw new IllegalStateException("The service exited with " + process.exitValue() + ": " + command);
+        }
+        if (answers(url)) {
+          return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+        Thread.sleep(POLL_INTERVAL.toMillis());
+      }
+      throw new IllegalStateException("The service did not answer within " + STARTUP_TIMEOUT + ": " + command);
+    } finally {
+      process.destroy();
+      if (!process.waitFor(10, TimeUnit.SECONDS)) {
+        process.destroyForcibly().waitFor();
+      }
+    }
+  }
+
+  private boolean answers(final URI url) throws InterruptedException {
+    try {
+      final HttpRequest request = HttpRequest.newBuilder(url).timeout(Duration.ofSeconds(5)).GET().build();
+      return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+    } catch (final IOException ex) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package integrations.turnitin.com.membersearcher;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import integrations.turnitin.com.membersearcher.client.AdaptiveConcurrencyLimiter;
+import integrations.turnitin.com.membersearcher.exception.ClientRequestException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveConcurrencyLimiterTest {
+
+	private static final long FAST = Duration.ofMillis(10).toNanos();
+	private static final long SLOW = Duration.ofSeconds(2).toNanos();
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	/**
+	 * Verifies that requests beyond the limit are queued, then rejected once the queue is full,
+	 * and that a released permit goes to the first queued request.
+	 */
+	@Test
+	void testQueuesThenRejectsBeyondTheLimit() {
+		final AdaptiveConcurrencyLimiter limiter = limiter(1, Duration.ofMinutes(1));
+		final List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+		permits.add(limiter.acquire().join());
+		permits.add(limiter.acquire().join());
+
+		final CompletableFuture<AdaptiveConcurrencyLimiter.Permit> queued = limiter.acquire();
+		final CompletableFuture<AdaptiveConcurrencyLimiter.Permit> rejected = limiter.acquire();
+
+		assertThat(queued).isNotDone();
+		assertThatThrownBy(rejected::join).isInstanceOf(CompletionException.class).hasCauseInstanceOf(ClientRequestException.class);
+		assertThat(meterRegistry.get("backend.limiter.rejections").counter().count()).isEqualTo(1);
+
+		permits.get(0).succeeded(FAST);
+		assertThat(queued).isCompleted();
+		assertThat(limiter.getInFlight()).isEqualTo(2);
+		assertThat(meterRegistry.get("backend.limiter.in-flight").gauge().value()).isEqualTo(2);
+	}
+
+	/**
+	 * Verifies that the limit grows with fast answers while it is in use, and shrinks with slow or failed ones.
+	 */
+	@Test
+	void testLimitFollowsRoundTripTimes() {
+		final AdaptiveConcurrencyLimiter limiter = limiter(1, Duration.ofMinutes(1));
+		for (int i = 0; i < 10; i++) {
+			final List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+			for (int j = limiter.getLimit(); j > 0; j--) {
+				permits.add(limiter.acquire().join());
+			}
+			permits.forEach(permit -> permit.succeeded(FAST));
+		}
+		assertThat(limiter.getLimit()).isEqualTo(63);
+
+		limiter.acquire().join().succeeded(SLOW);
+		assertThat(limiter.getLimit()).isEqualTo(56);
+		limiter.acquire().join().dropped();
+		limiter.acquire().join().dropped();
+		assertThat(limiter.getLimit()).isEqualTo(45);
+		assertThat(meterRegistry.get("backend.limiter.limit").gauge().value()).isEqualTo(45);
+	}
+
+	/**
+	 * Verifies that a queued request is rejected once it has waited too long, and leaves the queue.
+	 */
+	@Test
+	void testQueuedRequestTimesOut() {
+		final AdaptiveConcurrencyLimiter limiter = limiter(2, Duration.ofMillis(20));
+		limiter.acquire().join();
+		limiter.acquire().join();
+
+		final CompletableFuture<AdaptiveConcurrencyLimiter.Permit> queued = limiter.acquire();
+
+		assertThatThrownBy(queued::join).hasCauseInstanceOf(ClientRequestException.class);
+		assertThat(limiter.getQueued()).isZero();
+	}
+
+	/**
+	 * Verifies that a disabled limiter lets every request through.
+	 */
+	@Test
+	void testDisabledLimiterLetsEverythingThrough() {
+		final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(false, 2, 2, 0,
+				Duration.ofSeconds(1), Duration.ofSeconds(1), meterRegistry);
+
+		for (int i = 0; i < 10; i++) {
+			assertThat(limiter.acquire()).isCompleted();
+		}
+		assertThat(limiter.getInFlight()).isZero();
+	}
+
+	private AdaptiveConcurrencyLimiter limiter(final int maxQueue, final Duration maxWait) {
+		return new AdaptiveConcurrencyLimiter(true, 2, 100, maxQueue, maxWait, Duration.ofSeconds(1), meterRegistry);
+	}
+}
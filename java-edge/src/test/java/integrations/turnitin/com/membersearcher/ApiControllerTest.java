@@ -1,27 +1,44 @@
 package integrations.turnitin.com.membersearcher;
 
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import integrations.turnitin.com.membersearcher.controller.ApiController;
+import integrations.turnitin.com.membersearcher.controller.MembershipEventStream;
+import integrations.turnitin.com.membersearcher.exception.ClientRequestException;
+import integrations.turnitin.com.membersearcher.exception.InvalidRequestException;
+import integrations.turnitin.com.membersearcher.exception.NotFoundException;
 import integrations.turnitin.com.membersearcher.model.Membership;
 import integrations.turnitin.com.membersearcher.model.MembershipList;
+import integrations.turnitin.com.membersearcher.model.MembershipPage;
 import integrations.turnitin.com.membersearcher.model.User;
 import integrations.turnitin.com.membersearcher.service.MembershipService;
+import integrations.turnitin.com.membersearcher.service.UserService;
 import org.junit.jupiter.api.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPInputStream;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItem;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -35,6 +52,12 @@ class ApiControllerTest {
   @MockBean
   private MembershipService membershipService;
 
+  @MockBean
+  private UserService userService;
+
+  @MockBean
+  private MembershipEventStream membershipEventStream;
+
   /**
    * Tests the "/api/course/members" endpoint when it returns a list of memberships with users.
    * @throws Exception if an error occurs during the test execution
@@ -109,4 +132,269 @@ class ApiControllerTest {
         .andExpect(jsonPath("$.memberships[0].user").doesNotExist())
         .andExpect(jsonPath("$.memberships[1].user").doesNotExist());
   }
+
+  /**
+   * Tests the "/api/course/members" endpoint tags the response with the version of the memberships,
+   * and answers a request for the same version with 304 Not Modified and no body.
+   * @throws Exception if an error occurs during the test execution
+   */
+  @Test
+  void testMembershipsEndpointHonorsIfNoneMatch() throws Exception {
+    final MembershipList members = new MembershipList().setMemberships(Collections.emptyList());
+    when(membershipService.fetchAllMembershipsWithUsers()).thenReturn(CompletableFuture.completedFuture(members));
+    when(membershipService.versionOf(members)).thenReturn("v1");
+
+    final MvcResult result = mvc.perform(MockMvcRequestBuilders.get("/api/course/members")).andReturn();
+    mvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"v1\""));
+
+    final MvcResult conditional = mvc.perform(MockMvcRequestBuilders.get("/api/course/members")
+        .header(HttpHeaders.IF_NONE_MATCH, "\"v1\"")).andReturn();
+    mvc.perform(asyncDispatch(conditional))
+        .andExpect(status().isNotModified())
+        .andExpect(content().string(""));
+  }
+
+  /**
+   * Tests the "/api/course/{courseId}/members" endpoint returns the memberships of the course, tagged with their version,
+   * and rejects a course id that is not a UUID.
+   * @throws Exception if an error occurs during the test execution
+   */
+  @Test
+  void testCourseMembershipsEndpointReturnsCourseMemberships() throws Exception {
+    final String courseId = "c0a80101-0000-4000-8000-000000000001";
+    final MembershipList members = new MembershipList()
+        .setMemberships(List.of(new Membership().setId("a").setRole("student").setUserId("1")));
+    when(membershipService.fetchCourseMembershipsWithUsers(courseId)).thenReturn(CompletableFuture.completedFuture(members));
+    when(membershipService.versionOf(members)).thenReturn("c1");
+    when(membershipService.fetchCourseMembershipsWithUsers("not-a-course")).thenThrow(new InvalidRequestException("Invalid course id: not-a-course"));
+
+    final MvcResult result = mvc.perform(MockMvcRequestBuilders.get("/api/course/" + courseId + "/members")).andReturn();
+    mvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"c1\""))
+        .andExpect(jsonPath("$.memberships[0].id").value("a"));
+
+    mvc.perform(MockMvcRequestBuilders.get("/api/course/not-a-course/members"))
+        .andExpect(status().isBadRequest());
+  }
+
+  /**
+   * Tests that the "/api/course/members" endpoint answers in CBOR when asked to.
+   * @throws Exception if an error occurs during the test execution
+   */
+  @Test
+  void testMembershipsEndpointNegotiatesCbor() throws Exception {
+    final MembershipList members = new MembershipList()
+        .setMemberships(List.of(new Membership().setId("a").setRole("instructor").setUserId("1")));
+    when(membershipService.fetchAllMembershipsWithUsers()).thenReturn(CompletableFuture.completedFuture(members));
+
+    final MvcResult result = mvc.perform(MockMvcRequestBuilders.get("/api/course/members")
+        .accept("application/cbor")).andReturn();
+    final byte[] body = mvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType("application/cbor"))
+        .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)))
+        .andReturn().getResponse().getContentAsByteArray();
+
+    final MembershipList decoded = new CBORMapper().readValue(body, MembershipList.class);
+    assertThat(decoded.getMemberships()).extracting(Membership::getId).containsExactly("a");
+  }
+
+  /**
+   * Tests the "/api/course/members/search" endpoint returns the memberships matching the query.
+   * @throws Exception if an error occurs during the test execution
+   */
+  @Test
+  void testSearchEndpointReturnsMatches() throws Exception {
+    final MembershipList matches = new MembershipList()
+        .setMemberships(List.of(
+            new Membership()
+                .setId("a")
+                .setRole("instructor")
+                .setUserId("1")
+                .setUser(new User()
+                    .setId("1")
+                    .setName("test one")
+                    .setEmail("test1@example.com"))
+        ));
+    when(membershipService.searchMembershipsWithUsers("one")).thenReturn(CompletableFuture.completedFuture(matches));
+
+    final MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get("/api/course/members/search").param("q", "one");
+    final MvcResult result = mvc.perform(request).andReturn();
+    mvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.memberships.length()").value(1))
+        .andExpect(jsonPath("$.memberships[0].user.name").value("test one"));
+  }
+
+  /**
+   * Tests the "/api/course/members" endpoint returns a page envelope when a limit is given.
+   * @throws Exception if an error occurs during the test execution
+   */
+  @Test
+  void testMembershipsEndpointReturnsPageWhenLimited() throws Exception {
+    final MembershipPage page = new MembershipPage()
+        .setMemberships(List.of(new Membership().setId("a").setRole("instructor").setUserId("1")))
+        .setNextCursor("YQ");
+    when(membershipService.fetchMembershipsPage(null, 1)).thenReturn(CompletableFuture.completedFuture(page));
+
+    final MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get("/api/course/members").param("limit", "1");
+    final MvcResult result = mvc.perform(request).andReturn();
+    mvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.memberships.length()").value(1))
+        .andExpect(jsonPath("$.next_cursor").value("YQ"));
+  }
+
+  /**
+   * Tests the "/api/course/members" endpoint streams one membership per line when NDJSON is accepted.
+   * @throws Exception if an error occurs during the test execution
+   */
+  @Test
+  void testMembershipsEndpointStreamsNdjson() throws Exception {
+    final MembershipList members = new MembershipList()
+        .setMemberships(List.of(
+            new Membership().setId("a").setRole("instructor").setUserId("1"),
+            new Membership().setId("b").setRole("student").setUserId("2")
+        ));
+    when(membershipService.fetchAllMembershipsWithUsers()).thenReturn(CompletableFuture.completedFuture(members));
+
+    final MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get("/api/course/members")
+        .accept(MediaType.APPLICATION_NDJSON);
+    final MvcResult result = mvc.perform(request).andReturn();
+    mvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+        .andExpect(content().string(
+            "{\"id\":\"a\",\"role\":\"instructor\",\"user\":null,\"user_id\":\"1\"}\n"
+                + "{\"id\":\"b\",\"role\":\"student\",\"user\":null,\"user_id\":\"2\"}\n"));
+  }
+
+  /**
+   * Tests that the "/api/course/members" endpoint answers with gzip-compressed JSON when the client accepts gzip,
+   * and with the same JSON uncompressed otherwise, each representation with its own ETag.
+   * @throws Exception if an error occurs during the test execution
+   */
+  @Test
+  void testMembershipsEndpointServesGzip() throws Exception {
+    final MembershipList members = new MembershipList()
+        .setMemberships(List.of(new Membership().setId("a").setRole("instructor").setUserId("1")));
+    when(membershipService.fetchAllMembershipsWithUsers()).thenReturn(CompletableFuture.completedFuture(members));
+    when(membershipService.versionOf(members)).thenReturn("v1");
+
+    final MvcResult plain = mvc.perform(MockMvcRequestBuilders.get("/api/course/members")
+        .accept(MediaType.APPLICATION_JSON)).andReturn();
+    final byte[] json = mvc.perform(asyncDispatch(plain))
+        .andExpect(status().isOk())
+        .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+        .andExpect(header().string(HttpHeaders.ETAG, "\"v1\""))
+        .andExpect(jsonPath("$.memberships[0].id").value("a"))
+        .andReturn().getResponse().getContentAsByteArray();
+
+    final MvcResult compressed = mvc.perform(MockMvcRequestBuilders.get("/api/course/members")
+        .accept(MediaType.APPLICATION_JSON)
+        .header(HttpHeaders.ACCEPT_ENCODING, "br, gzip;q=0.8")).andReturn();
+    final byte[] gzip = mvc.perform(asyncDispatch(compressed))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+        .andExpect(header().string(HttpHeaders.ETAG, "\"v1-gzip\""))
+        .andReturn().getResponse().getContentAsByteArray();
+
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+      assertThat(in.readAllBytes()).isEqualTo(json);
+    }
+
+    final MvcResult otherCoding = mvc.perform(MockMvcRequestBuilders.get("/api/course/members")
+        .accept(MediaType.APPLICATION_JSON)
+        .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+        .header(HttpHeaders.IF_NONE_MATCH, "\"v1\"")).andReturn();
+    mvc.perform(asyncDispatch(otherCoding))
+        .andExpect(status().isOk());
+    final MvcResult revalidated = mvc.perform(MockMvcRequestBuilders.get("/api/course/members")
+        .accept(MediaType.APPLICATION_JSON)
+        .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+        .header(HttpHeaders.IF_NONE_MATCH, "\"v1-gzip\"")).andReturn();
+    mvc.perform(asyncDispatch(revalidated))
+        .andExpect(status().isNotModified());
+  }
+
+  /**
+   * Tests that clients accepting any media type, such as browsers, curl and the frontend's fetch, are served the
+   * serialized JSON, gzip-compressed when they accept it, rather than the CBOR or per-request JSON.
+   * @throws Exception if an error occurs during the test execution
+   */
+  @Test
+  void testMembershipsEndpointServesSerializedJsonToAnyAccept() throws Exception {
+    final String courseId = "c0a80101-0000-4000-8000-000000000001";
+    final MembershipList members = new MembershipList()
+        .setMemberships(List.of(new Membership().setId("a").setRole("instructor").setUserId("1")));
+    when(membershipService.fetchAllMembershipsWithUsers()).thenReturn(CompletableFuture.completedFuture(members));
+    when(membershipService.fetchCourseMembershipsWithUsers(courseId)).thenReturn(CompletableFuture.completedFuture(members));
+    when(membershipService.versionOf(members)).thenReturn("v1");
+
+    for (final String path : List.of("/api/course/members", "/api/course/" + courseId + "/members")) {
+      final MvcResult result = mvc.perform(MockMvcRequestBuilders.get(path)
+          .accept(MediaType.ALL)
+          .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate")).andReturn();
+      final byte[] gzip = mvc.perform(asyncDispatch(result))
+          .andExpect(status().isOk())
+          .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+          .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+          .andExpect(header().string(HttpHeaders.ETAG, "\"v1-gzip\""))
+          .andReturn().getResponse().getContentAsByteArray();
+
+      try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+        assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).contains("\"id\":\"a\"");
+      }
+    }
+  }
+
+  /**
+   * Tests the "/api/course/members/events" endpoint opens an event stream fed by the membership event stream.
+   * @throws Exception if an error occurs during the test execution
+   */
+  @Test
+  void testMembershipEventsEndpointStreamsEvents() throws Exception {
+    final SseEmitter emitter = new SseEmitter();
+    when(membershipEventStream.subscribe()).thenReturn(emitter);
+
+    final MvcResult result = mvc.perform(MockMvcRequestBuilders.get("/api/course/members/events")
+        .accept(MediaType.TEXT_EVENT_STREAM)).andReturn();
+    emitter.send(SseEmitter.event().id("v2").name("changes").data("{}", MediaType.APPLICATION_JSON));
+    emitter.complete();
+
+    assertThat(result.getResponse().getContentType()).startsWith(MediaType.TEXT_EVENT_STREAM_VALUE);
+    assertThat(result.getResponse().getContentAsString()).isEqualTo("id:v2\nevent:changes\ndata:{}\n\n");
+  }
+
+  /**
+   * Tests the "/api/users/{id}" endpoint returns the user, answers an unknown id with 404 Not Found, and a failed
+   * backend call with 502 Bad Gateway rather than 404.
+   * @throws Exception if an error occurs during the test execution
+   */
+  @Test
+  void testUserEndpointReturnsUser() throws Exception {
+    final String userId = "0b3e8c1a-6f4e-4b0a-9c3d-2f1e5a7b9c11";
+    final String unknownId = "0b3e8c1a-6f4e-4b0a-9c3d-2f1e5a7b9c12";
+    final String unreachableId = "0b3e8c1a-6f4e-4b0a-9c3d-2f1e5a7b9c13";
+    when(userService.fetchUser(unreachableId)).thenReturn(CompletableFuture.failedFuture(new ClientRequestException("Timed out calling URL")));
+    when(userService.fetchUser(userId)).thenReturn(CompletableFuture.completedFuture(
+        new User().setId(userId).setName("test one").setEmail("test1@example.com")));
+    when(userService.fetchUser(unknownId)).thenReturn(CompletableFuture.failedFuture(new NotFoundException("No user with id " + unknownId)));
+
+    final MvcResult result = mvc.perform(MockMvcRequestBuilders.get("/api/users/" + userId)).andReturn();
+    mvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.name").value("test one"));
+
+    final MvcResult unknown = mvc.perform(MockMvcRequestBuilders.get("/api/users/" + unknownId)).andReturn();
+    mvc.perform(asyncDispatch(unknown))
+        .andExpect(status().isNotFound());
+
+    final MvcResult unreachable = mvc.perform(MockMvcRequestBuilders.get("/api/users/" + unreachableId)).andReturn();
+    mvc.perform(asyncDispatch(unreachable))
+        .andExpect(status().isBadGateway());
+  }
 }
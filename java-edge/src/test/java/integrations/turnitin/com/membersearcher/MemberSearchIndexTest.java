@@ -0,0 +1,72 @@
+package integrations.turnitin.com.membersearcher;
+
+import java.util.List;
+
+import integrations.turnitin.com.membersearcher.model.Membership;
+import integrations.turnitin.com.membersearcher.model.MembershipList;
+import integrations.turnitin.com.membersearcher.model.User;
+import integrations.turnitin.com.membersearcher.search.MemberSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberSearchIndexTest {
+
+	private MembershipList members;
+	private MemberSearchIndex index;
+
+	/**
+	 * Builds an index over three memberships, one of them without a user.
+	 */
+	@BeforeEach
+	public void init() {
+		members = new MembershipList()
+				.setMemberships(List.of(
+						new Membership().setId("a").setRole("instructor").setUserId("1")
+								.setUser(new User().setId("1").setName("John Smith").setEmail("JSmith@example.com")),
+						new Membership().setId("b").setRole("student").setUserId("2")
+								.setUser(new User().setId("2").setName("Mary Doe").setEmail("MDoe@example.com")),
+						new Membership().setId("c").setRole("student").setUserId("3")
+				));
+		index = MemberSearchIndex.build(members);
+	}
+
+	/**
+	 * Verifies that substring matches ignore case on both name and email.
+	 */
+	@Test
+	void testSearchIsCaseInsensitive() {
+		assertThat(index.search("SMITH")).extracting(Membership::getId).containsExactly("a");
+		assertThat(index.search("mdoe@")).extracting(Membership::getId).containsExactly("b");
+		assertThat(index.search("example.com")).extracting(Membership::getId).containsExactly("a", "b");
+	}
+
+	/**
+	 * Verifies that queries shorter than a trigram still match.
+	 */
+	@Test
+	void testShortQuery() {
+		assertThat(index.search("ma")).extracting(Membership::getId).containsExactly("b");
+	}
+
+	/**
+	 * Verifies that a query sharing every trigram but not the full substring does not match,
+	 * and that a query never spans the name and email fields.
+	 */
+	@Test
+	void testNoFalsePositives() {
+		assertThat(index.search("smithsmith")).isEmpty();
+		assertThat(index.search("doemdoe")).isEmpty();
+		assertThat(index.search("unknown")).isEmpty();
+	}
+
+	/**
+	 * Verifies that a blank query returns every membership.
+	 */
+	@Test
+	void testBlankQueryMatchesAll() {
+		assertThat(index.search("  ")).hasSize(3);
+		assertThat(index.isBuiltFrom(members)).isTrue();
+	}
+}
@@ -0,0 +1,140 @@
+package integrations.turnitin.com.membersearcher;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import integrations.turnitin.com.membersearcher.client.AdaptiveConcurrencyLimiter;
+import integrations.turnitin.com.membersearcher.client.MembershipBackendClient;
+import integrations.turnitin.com.membersearcher.model.User;
+import integrations.turnitin.com.membersearcher.model.UserList;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MembershipBackendClientTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+	private final AtomicInteger revalidated = new AtomicInteger();
+	private final ExecutorService serverExecutor = Executors.newCachedThreadPool();
+	private HttpServer server;
+
+	@BeforeEach
+	void startBackend() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/api.php/users", this::answerUsers);
+		server.setExecutor(serverExecutor);
+		server.start();
+	}
+
+	@AfterEach
+	void stopBackend() {
+		server.stop(0);
+		serverExecutor.shutdownNow();
+	}
+
+	/**
+	 * Verifies that a lookup split into more chunks than the limiter lets through and queues is not rejected by it:
+	 * the chunks are requested a few at a time, and every user is returned in order.
+	 */
+	@Test
+	void testFetchUsersByIdsStaysWithinTheLimiter() {
+		final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(true, 2, 2, 2,
+				Duration.ofSeconds(1), Duration.ofSeconds(1), meterRegistry);
+		final MembershipBackendClient client = client(limiter, 1000);
+
+		final List<String> ids = userIds(40);
+		final UserList users = client.fetchUsersByIds(ids).join();
+
+		assertThat(users.getUsers()).extracting(User::getId).containsExactlyElementsOf(ids);
+		assertThat(maxInFlight.get()).isLessThanOrEqualTo(3);
+		assertThat(meterRegistry.get("backend.limiter.rejections").counter().count()).isZero();
+	}
+
+	/**
+	 * Verifies that the responses kept to answer revalidations hold no more records than allowed: only the chunks
+	 * that fit are revalidated on the next lookup, and the others are fetched in full again.
+	 */
+	@Test
+	void testConditionalCacheIsBoundedByRecords() {
+		final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(false, 2, 2, 0,
+				Duration.ofSeconds(1), Duration.ofSeconds(1), meterRegistry);
+		final MembershipBackendClient client = client(limiter, 4);
+
+		final List<String> ids = userIds(20);
+		client.fetchUsersByIds(ids).join();
+		final UserList users = client.fetchUsersByIds(ids).join();
+
+		assertThat(users.getUsers()).extracting(User::getId).containsExactlyElementsOf(ids);
+		assertThat(revalidated.get()).isBetween(1, 2);
+	}
+
+	private MembershipBackendClient client(final AdaptiveConcurrencyLimiter limiter, final long conditionalCacheMaxRecords) {
+		final MembershipBackendClient client = new MembershipBackendClient(new ObjectMapper(), meterRegistry, limiter,
+				false, false, 0.95, conditionalCacheMaxRecords);
+		ReflectionTestUtils.setField(client, "backendHost", "http://localhost:" + server.getAddress().getPort());
+		ReflectionTestUtils.setField(client, "userBatchSize", 2);
+		ReflectionTestUtils.setField(client, "maxConcurrentUserBatches", 3);
+		ReflectionTestUtils.setField(client, "requestTimeout", Duration.ofSeconds(10));
+		return client;
+	}
+
+	private static List<String> userIds(final int count) {
+		final List<String> ids = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			ids.add("user-" + i);
+		}
+		return ids;
+	}
+
+	/**
+	 * Answers a batch lookup with the users of the requested ids, tagged with an ETag derived from the ids.
+	 */
+	private void answerUsers(final HttpExchange exchange) throws IOException {
+		maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+		try {
+			Thread.sleep(20);
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		} finally {
+			inFlight.decrementAndGet();
+		}
+		final String query = URLDecoder.decode(exchange.getRequestURI().getRawQuery(), StandardCharsets.UTF_8);
+		final String etag = "\"" + query.hashCode() + "\"";
+		exchange.getResponseHeaders().add("ETag", etag);
+		if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+			revalidated.incrementAndGet();
+			exchange.sendResponseHeaders(304, -1);
+			exchange.close();
+			return;
+		}
+		final String users = Arrays.stream(query.substring(query.indexOf("ids=") + 4).split(","))
+				.map(id -> "{\"id\":\"" + id + "\",\"name\":\"" + id + "\",\"email\":\"" + id + "@example.com\"}")
+				.collect(Collectors.joining(","));
+		final byte[] body = ("{\"users\":[" + users + "]}").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package integrations.turnitin.com.membersearcher;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import integrations.turnitin.com.membersearcher.controller.MembershipEventStream;
+import integrations.turnitin.com.membersearcher.model.MembershipChanges;
+import integrations.turnitin.com.membersearcher.service.MembershipService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MembershipEventStreamTest {
+
+	private final Queue<Runnable> tasks = new ArrayDeque<>();
+	private SimpleMeterRegistry meterRegistry;
+	private MembershipEventStream eventStream;
+	@Mock
+	private MembershipService membershipService;
+	@Mock
+	private Runnable unsubscribe;
+
+	/**
+	 * Initializes an event stream keeping two events per stream, writing on an executor the tests run by hand.
+	 */
+	@BeforeEach
+	public void init() {
+		meterRegistry = new SimpleMeterRegistry();
+		eventStream = new MembershipEventStream(membershipService, new ObjectMapper(), Duration.ofMinutes(1), 2, tasks::add, meterRegistry);
+		when(membershipService.subscribe(any())).thenReturn(unsubscribe);
+	}
+
+	/**
+	 * Verifies that pushed changes are only queued on the pushing thread, and written by a single task of the executor.
+	 */
+	@Test
+	void testWritesOnExecutor() {
+		eventStream.subscribe();
+		subscriber().accept(changes("v1"));
+
+		assertThat(tasks).hasSize(1);
+		tasks.poll().run();
+		subscriber().accept(changes("v2"));
+
+		assertThat(tasks).hasSize(1);
+		verify(unsubscribe, never()).run();
+	}
+
+	/**
+	 * Verifies that a stream falling more events behind than it may keep is unsubscribed, counted and closed, and gets
+	 * no further events.
+	 */
+	@Test
+	void testDropsStreamFallingBehind() {
+		eventStream.subscribe();
+		subscriber().accept(changes("v1"));
+		subscriber().accept(changes("v2"));
+
+		verify(unsubscribe).run();
+		assertThat(meterRegistry.get("membership.push.dropped").counter().count()).isEqualTo(1);
+
+		subscriber().accept(changes("v3"));
+		eventStream.sendHeartbeats();
+		assertThat(meterRegistry.get("membership.push.dropped").counter().count()).isEqualTo(1);
+		assertThat(tasks).hasSize(2);
+		tasks.forEach(Runnable::run);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Consumer<MembershipChanges> subscriber() {
+		final ArgumentCaptor<Consumer<MembershipChanges>> captor = ArgumentCaptor.forClass(Consumer.class);
+		verify(membershipService).subscribe(captor.capture());
+		return captor.getValue();
+	}
+
+	private static MembershipChanges changes(final String version) {
+		return new MembershipChanges().setVersion(version).setUpserted(List.of()).setRemoved(List.of("a"));
+	}
+}
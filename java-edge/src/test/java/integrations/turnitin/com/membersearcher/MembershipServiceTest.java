@@ -1,33 +1,53 @@
 package integrations.turnitin.com.membersearcher;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import integrations.turnitin.com.membersearcher.client.MembershipBackendClient;
+import integrations.turnitin.com.membersearcher.config.MembershipProperties;
+import integrations.turnitin.com.membersearcher.exception.InvalidRequestException;
 import integrations.turnitin.com.membersearcher.model.Membership;
+import integrations.turnitin.com.membersearcher.model.MembershipChanges;
 import integrations.turnitin.com.membersearcher.model.MembershipList;
+import integrations.turnitin.com.membersearcher.model.MembershipPage;
+import integrations.turnitin.com.membersearcher.model.RosterChange;
+import integrations.turnitin.com.membersearcher.model.RosterChangePage;
 import integrations.turnitin.com.membersearcher.model.User;
 import integrations.turnitin.com.membersearcher.model.UserList;
 import integrations.turnitin.com.membersearcher.service.MembershipService;
+import integrations.turnitin.com.membersearcher.service.WarmStartFile;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 @MockitoSettings(strictness = Strictness.LENIENT) // In this mode, Mockito does not check whether a mock's methods are called with the correct arguments
 class MembershipServiceTest {
 
-	@InjectMocks
 	private MembershipService membershipService;
+	private SimpleMeterRegistry meterRegistry;
 	@Mock
 	private MembershipBackendClient membershipBackendClient;
 
@@ -40,6 +60,9 @@ class MembershipServiceTest {
 	 */
 	@BeforeEach
 	public void init() {
+		meterRegistry = new SimpleMeterRegistry();
+		membershipService = newService(Map.of(), noWarmStart(), meterRegistry);
+
     members = new MembershipList()
         .setMemberships(List.of(
             new Membership()
@@ -98,6 +121,7 @@ class MembershipServiceTest {
 
 		final MembershipList members = membershipService.fetchAllMembershipsWithUsers().join();
 		assertThat(members.getMemberships()).isEmpty();
+		assertThat(meterRegistry.get("membership.fetch.fallback").counter().count()).isEqualTo(1);
 	}
 
 	/**
@@ -131,4 +155,343 @@ class MembershipServiceTest {
 		assertThat(members.getMemberships().get(0).getUser()).isNull();
 		assertThat(members.getMemberships().get(1).getUser()).isNull();
 	}
+
+	/**
+	 * Test method for {@link MembershipService#fetchAllMembershipsWithUsers()}.
+	 * Verifies that a second call within the TTL is served from the snapshot without calling the backend again.
+	 *
+	 * @throws Exception if an error occurs during the test
+	 */
+	@Test
+	void testFetchAllMembershipsServedFromSnapshot() throws Exception {
+		final MembershipList first = membershipService.fetchAllMembershipsWithUsers().get();
+		final MembershipList second = membershipService.fetchAllMembershipsWithUsers().get();
+
+		assertThat(second).isSameAs(first);
+		verify(membershipBackendClient, times(1)).fetchMemberships();
+		verify(membershipBackendClient, times(1)).fetchUsers();
+		assertThat(membershipService.getSnapshotCache().getMisses()).isEqualTo(1);
+		assertThat(membershipService.getSnapshotCache().getHits()).isEqualTo(1);
+	}
+
+	/**
+	 * Test method for {@link MembershipService#fetchAllMembershipsWithUsers()}.
+	 * Verifies that a refresh keeps the current snapshot, and its version, when every backend response was
+	 * 304 Not Modified, and joins a new snapshot once a response carried a body.
+	 *
+	 * @throws Exception if an error occurs during the test
+	 */
+	@Test
+	void testRefreshKeepsSnapshotWhenBackendUnchanged() throws Exception {
+		when(membershipBackendClient.getModifiedResponses()).thenReturn(2L);
+		final MembershipList first = membershipService.fetchAllMembershipsWithUsers().get();
+		final String version = membershipService.versionOf(first);
+		assertThat(first.getVersion()).isEqualTo(version);
+
+		assertThat(membershipService.getSnapshotCache().refresh().get()).isSameAs(first);
+		assertThat(membershipService.versionOf(first)).isEqualTo(version);
+		assertThat(meterRegistry.counter("membership.snapshot.unchanged").count()).isEqualTo(1);
+
+		when(membershipBackendClient.getModifiedResponses()).thenReturn(3L);
+		final MembershipList refreshed = membershipService.getSnapshotCache().refresh().get();
+		assertThat(refreshed).isNotSameAs(first);
+		assertThat(membershipService.versionOf(refreshed)).isEqualTo(version);
+	}
+
+	/**
+	 * Test method for {@link MembershipService#fetchAllMembershipsWithUsers()}.
+	 * Verifies that a refresh handed back the same membership records, as a revalidated backend page is, joins copies
+	 * of them, leaving the snapshot being served and its version as they were.
+	 *
+	 * @throws Exception if an error occurs during the test
+	 */
+	@Test
+	void testRefreshLeavesServedSnapshotUntouched() throws Exception {
+		when(membershipBackendClient.getModifiedResponses()).thenReturn(2L);
+		final MembershipList first = membershipService.fetchAllMembershipsWithUsers().get();
+		final String version = membershipService.versionOf(first);
+
+		when(membershipBackendClient.fetchUsers()).thenReturn(CompletableFuture.completedFuture(new UserList().setUsers(List.of(
+				new User().setId("1").setName("renamed one").setEmail("test1@example.com"), userTwo))));
+		when(membershipBackendClient.getModifiedResponses()).thenReturn(3L);
+		final MembershipList refreshed = membershipService.getSnapshotCache().refresh().get();
+
+		assertThat(refreshed.getMemberships().get(0).getUser().getName()).isEqualTo("renamed one");
+		assertThat(first.getMemberships().get(0).getUser().getName()).isEqualTo("test one");
+		assertThat(members.getMemberships().get(0).getUser()).isNull();
+		assertThat(membershipService.versionOf(first)).isEqualTo(version).isNotEqualTo(membershipService.versionOf(refreshed));
+	}
+
+	/**
+	 * Test method for {@link MembershipService#fetchMembershipsPage(String, int)}.
+	 * Verifies that following the next cursor walks the memberships in id order until the last page.
+	 *
+	 * @throws Exception if an error occurs during the test
+	 */
+	@Test
+	void testFetchMembershipsPage() throws Exception {
+		final MembershipPage first = membershipService.fetchMembershipsPage(null, 1).get();
+		assertThat(first.getMemberships()).extracting(Membership::getId).containsExactly("a");
+		assertThat(first.getNextCursor()).isNotNull();
+
+		final MembershipPage second = membershipService.fetchMembershipsPage(first.getNextCursor(), 1).get();
+		assertThat(second.getMemberships()).extracting(Membership::getId).containsExactly("b");
+		assertThat(second.getMemberships().get(0).getUser()).isEqualTo(userTwo);
+		assertThat(second.getNextCursor()).isNull();
+	}
+
+	/**
+	 * Test method for {@link MembershipService#fetchAllMembershipsWithUsers()} in streaming join mode.
+	 * Verifies that records streamed from the backend are joined without fetching the full lists.
+	 *
+	 * @throws Exception if an error occurs during the test
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	void testFetchAllMembershipsStreamingJoin() throws Exception {
+		doAnswer(invocation -> {
+			members.getMemberships().forEach(invocation.<Consumer<Membership>>getArgument(0));
+			return CompletableFuture.completedFuture(null);
+		}).when(membershipBackendClient).streamMemberships(any(Consumer.class));
+		doAnswer(invocation -> {
+			List.of(userOne, userTwo).forEach(invocation.<Consumer<User>>getArgument(0));
+			return CompletableFuture.completedFuture(null);
+		}).when(membershipBackendClient).streamUsers(any(Consumer.class));
+
+		final MembershipService streamingService = newService(Map.of("membership.join.streaming", "true"), noWarmStart(), new SimpleMeterRegistry());
+		final MembershipList members = streamingService.fetchAllMembershipsWithUsers().get();
+
+		assertThat(members.getMemberships().get(0).getUser()).isEqualTo(userOne);
+		assertThat(members.getMemberships().get(1).getUser()).isEqualTo(userTwo);
+		verify(membershipBackendClient, never()).fetchMemberships();
+		verify(membershipBackendClient, never()).fetchUsers();
+	}
+
+	/**
+	 * Test method for {@link MembershipService#fetchAllMembershipsWithUsers()} with batched user lookup enabled.
+	 * Verifies that the users referenced by a small number of memberships are looked up by id instead of
+	 * fetching every user.
+	 *
+	 * @throws Exception if an error occurs during the test
+	 */
+	@Test
+	void testFetchAllMembershipsBatchedUserLookup() throws Exception {
+		when(membershipBackendClient.fetchUsersByIds(Set.of("1", "2")))
+				.thenReturn(CompletableFuture.completedFuture(new UserList().setUsers(List.of(userOne, userTwo))));
+
+		final MembershipService batchingService = newService(Map.of("membership.join.batch-lookup-max-ids", "5000"), noWarmStart(), new SimpleMeterRegistry());
+		final MembershipList members = batchingService.fetchAllMembershipsWithUsers().get();
+
+		assertThat(members.getMemberships().get(0).getUser()).isEqualTo(userOne);
+		assertThat(members.getMemberships().get(1).getUser()).isEqualTo(userTwo);
+		verify(membershipBackendClient, never()).fetchUsers();
+	}
+
+	/**
+	 * Test method for {@link MembershipService#fetchAllMembershipsWithUsers()} with the join in the backend.
+	 * Verifies that the memberships are fetched with their users in one request, ordered by id, and that the
+	 * copies of a user the backend sends with each of their memberships are shared.
+	 *
+	 * @throws Exception if an error occurs during the test
+	 */
+	@Test
+	void testFetchAllMembershipsJoinedInBackend() throws Exception {
+		when(membershipBackendClient.fetchMembershipsWithUsers()).thenReturn(CompletableFuture.completedFuture(new MembershipList()
+				.setMemberships(List.of(
+						new Membership().setId("c").setRole("student").setUserId("1")
+								.setUser(new User().setId("1").setName("test one").setEmail("test1@example.com")),
+						new Membership().setId("a").setRole("instructor").setUserId("1")
+								.setUser(new User().setId("1").setName("test one").setEmail("test1@example.com")),
+						new Membership().setId("b").setRole("student").setUserId("3")))));
+
+		final MembershipService joiningService = newService(Map.of("membership.join.in-backend", "true"), noWarmStart(), new SimpleMeterRegistry());
+		final List<Membership> members = joiningService.fetchAllMembershipsWithUsers().get().getMemberships();
+
+		assertThat(members).extracting(Membership::getId).containsExactly("a", "b", "c");
+		assertThat(members.get(0).getUser()).isSameAs(members.get(2).getUser());
+		assertThat(members.get(1).getUser()).isNull();
+		verify(membershipBackendClient, never()).fetchMemberships();
+		verify(membershipBackendClient, never()).fetchUsers();
+	}
+
+	/**
+	 * Test method for {@link MembershipService#fetchAllMembershipsWithUsers()} with delta sync enabled.
+	 * Verifies that refreshes apply the changes from the backend change feed to the snapshot instead of fetching
+	 * every membership and user again, and keep the snapshot when nothing changed.
+	 *
+	 * @throws Exception if an error occurs during the test
+	 */
+	@Test
+	void testRefreshAppliesChangesWithDeltaSync() throws Exception {
+		final User renamed = new User().setId("2").setName("renamed two").setEmail("test2@example.com");
+		when(membershipBackendClient.fetchChanges(null))
+				.thenReturn(CompletableFuture.completedFuture(new RosterChangePage().setChanges(List.of()).setCursor(5)));
+		when(membershipBackendClient.fetchChanges(5L))
+				.thenReturn(CompletableFuture.completedFuture(new RosterChangePage().setCursor(7).setChanges(List.of(
+						new RosterChange().setSeq(6).setEntity(RosterChange.USERS).setOp(RosterChange.UPSERT).setId("2").setUser(renamed),
+						new RosterChange().setSeq(7).setEntity(RosterChange.MEMBERSHIPS).setOp(RosterChange.DELETE).setId("a")))));
+		when(membershipBackendClient.fetchChanges(7L))
+				.thenReturn(CompletableFuture.completedFuture(new RosterChangePage().setChanges(List.of()).setCursor(7)));
+
+		final MembershipService deltaService = newService(Map.of("membership.delta-sync.enabled", "true"), noWarmStart(), meterRegistry);
+		final MembershipList first = deltaService.fetchAllMembershipsWithUsers().get();
+		assertThat(first.getMemberships()).extracting(Membership::getId).containsExactly("a", "b");
+
+		final MembershipList refreshed = deltaService.getSnapshotCache().refresh().get();
+		assertThat(refreshed.getMemberships()).extracting(Membership::getId).containsExactly("b");
+		assertThat(refreshed.getMemberships().get(0).getUser()).isSameAs(renamed);
+		assertThat(first.getMemberships().get(1).getUser()).isEqualTo(userTwo);
+		assertThat(deltaService.versionOf(refreshed)).isNotEqualTo(deltaService.versionOf(first));
+
+		assertThat(deltaService.getSnapshotCache().refresh().get()).isSameAs(refreshed);
+		verify(membershipBackendClient, times(1)).fetchMemberships();
+		verify(membershipBackendClient, times(1)).fetchUsers();
+		assertThat(meterRegistry.counter("membership.delta.resyncs").count()).isEqualTo(1);
+	}
+
+	/**
+	 * Test method for {@link MembershipService#fetchAllMembershipsWithUsers()} with a warm start file.
+	 * Verifies that a loaded snapshot is saved, and that a service started later serves it without calling the backend.
+	 *
+	 * @param directory a temporary directory holding the warm start file
+	 * @throws Exception if an error occurs during the test
+	 */
+	@Test
+	void testWarmStartServesSavedSnapshot(@TempDir final Path directory) throws Exception {
+		final WarmStartFile warmStartFile = new WarmStartFile(directory.resolve("roster.cbor").toString(), Duration.ofHours(1));
+		final MembershipService savingService = newService(Map.of(), warmStartFile, new SimpleMeterRegistry());
+		savingService.fetchAllMembershipsWithUsers().get();
+		final long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+		while (warmStartFile.load(Instant.now()).isEmpty() && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		clearInvocations(membershipBackendClient);
+
+		final MembershipService restartedService = newService(Map.of(), warmStartFile, new SimpleMeterRegistry());
+		final MembershipList served = restartedService.fetchAllMembershipsWithUsers().get();
+
+		assertThat(served.getMemberships()).extracting(Membership::getId).containsExactly("a", "b");
+		assertThat(served.getMemberships()).extracting(membership -> membership.getUser().getName()).containsExactly("test one", "test two");
+		assertThat(restartedService.versionOf(served)).isEqualTo(savingService.versionOf(savingService.fetchAllMembershipsWithUsers().get()));
+		verifyNoInteractions(membershipBackendClient);
+	}
+
+	/**
+	 * Test method for {@link MembershipService#fetchCourseMembershipsWithUsers(String)}.
+	 * Verifies that a course is loaded from its own memberships and the users they reference only, that its
+	 * snapshot is cached apart from the others, and that the least recently used course is dropped beyond the limit.
+	 *
+	 * @throws Exception if an error occurs during the test
+	 */
+	@Test
+	void testFetchCourseMembershipsWithUsers() throws Exception {
+		final String firstCourse = "c0a80101-0000-4000-8000-000000000001";
+		final String secondCourse = "c0a80101-0000-4000-8000-000000000002";
+		when(membershipBackendClient.fetchCourseMemberships(firstCourse)).thenAnswer(invocation -> CompletableFuture.completedFuture(
+				new MembershipList().setMemberships(List.of(new Membership().setId("b").setRole("student").setUserId("2")))));
+		when(membershipBackendClient.fetchCourseMemberships(secondCourse)).thenAnswer(invocation -> CompletableFuture.completedFuture(
+				new MembershipList().setMemberships(List.of())));
+		when(membershipBackendClient.fetchUsersByIds(Set.of("2")))
+				.thenReturn(CompletableFuture.completedFuture(new UserList().setUsers(List.of(userTwo))));
+
+		final SimpleMeterRegistry courseRegistry = new SimpleMeterRegistry();
+		final MembershipService courseService = newService(Map.of("membership.course-cache.max-courses", "1"), noWarmStart(), courseRegistry);
+		final MembershipList course = courseService.fetchCourseMembershipsWithUsers(firstCourse.toUpperCase()).get();
+		assertThat(course.getMemberships()).extracting(membership -> membership.getUser().getName()).containsExactly("test two");
+		assertThat(courseService.fetchCourseMembershipsWithUsers(firstCourse).get()).isSameAs(course);
+		assertThat(courseService.fetchCourseMembershipsWithUsers(secondCourse).get().getMemberships()).isEmpty();
+		assertThat(courseService.fetchCourseMembershipsWithUsers(firstCourse).get()).isNotSameAs(course);
+
+		verify(membershipBackendClient, times(2)).fetchCourseMemberships(firstCourse);
+		verify(membershipBackendClient, never()).fetchMemberships();
+		verify(membershipBackendClient, never()).fetchUsers();
+		assertThat(courseRegistry.get("membership.course.snapshots").gauge().value()).isEqualTo(1);
+		assertThatThrownBy(() -> courseService.fetchCourseMembershipsWithUsers("not-a-course")).isInstanceOf(InvalidRequestException.class);
+	}
+
+	/**
+	 * Test method for {@link MembershipService#pushChanges()}.
+	 * Verifies that nothing is polled without subscribers, that the first push only takes a baseline, and that later
+	 * pushes send the memberships added, changed and removed since, once, to every subscriber.
+	 *
+	 * @throws Exception if an error occurs during the test
+	 */
+	@Test
+	void testPushChangesToSubscribers() throws Exception {
+		membershipService.pushChanges();
+		verify(membershipBackendClient, never()).fetchMemberships();
+
+		final List<MembershipChanges> first = new ArrayList<>();
+		final List<MembershipChanges> second = new ArrayList<>();
+		final Runnable unsubscribeFirst = membershipService.subscribe(first::add);
+		membershipService.subscribe(second::add);
+		when(membershipBackendClient.getModifiedResponses()).thenReturn(1L);
+		membershipService.pushChanges();
+		assertThat(first).isEmpty();
+
+		final MembershipList before = membershipService.fetchAllMembershipsWithUsers().get();
+		when(membershipBackendClient.fetchMemberships()).thenReturn(CompletableFuture.completedFuture(new MembershipList()
+				.setMemberships(List.of(
+						new Membership().setId("b").setRole("instructor").setUserId("2"),
+						new Membership().setId("c").setRole("student").setUserId("1")))));
+		when(membershipBackendClient.getModifiedResponses()).thenReturn(2L);
+		membershipService.pushChanges();
+		membershipService.pushChanges();
+
+		assertThat(first).hasSize(1);
+		assertThat(second).containsExactlyElementsOf(first);
+		final MembershipChanges changes = first.get(0);
+		assertThat(changes.getUpserted()).extracting(Membership::getId).containsExactly("b", "c");
+		assertThat(changes.getUpserted().get(1).getUser().getName()).isEqualTo("test one");
+		assertThat(changes.getRemoved()).containsExactly("a");
+		assertThat(changes.getPreviousVersion()).isEqualTo(membershipService.versionOf(before));
+		assertThat(changes.getVersion()).isEqualTo(membershipService.versionOf(membershipService.fetchAllMembershipsWithUsers().get()));
+		assertThat(meterRegistry.get("membership.push.subscribers").gauge().value()).isEqualTo(2);
+
+		unsubscribeFirst.run();
+		assertThat(meterRegistry.get("membership.push.subscribers").gauge().value()).isEqualTo(1);
+	}
+
+	/**
+	 * Test method for {@link MembershipService#pushChanges()}.
+	 * Verifies that a change to a user alone is pushed, with the memberships of the user, when the membership page
+	 * is revalidated and hands back the same membership records.
+	 *
+	 * @throws Exception if an error occurs during the test
+	 */
+	@Test
+	void testPushChangesOfUsersOnRevalidatedMemberships() throws Exception {
+		final List<MembershipChanges> pushed = new ArrayList<>();
+		membershipService.subscribe(pushed::add);
+		when(membershipBackendClient.getModifiedResponses()).thenReturn(2L);
+		membershipService.pushChanges();
+
+		when(membershipBackendClient.fetchUsers()).thenReturn(CompletableFuture.completedFuture(new UserList().setUsers(List.of(
+				userOne, new User().setId("2").setName("renamed two").setEmail("test2@example.com")))));
+		when(membershipBackendClient.getModifiedResponses()).thenReturn(3L);
+		membershipService.pushChanges();
+
+		assertThat(pushed).hasSize(1);
+		assertThat(pushed.get(0).getUpserted()).extracting(Membership::getId).containsExactly("b");
+		assertThat(pushed.get(0).getUpserted().get(0).getUser().getName()).isEqualTo("renamed two");
+		assertThat(pushed.get(0).getRemoved()).isEmpty();
+	}
+
+	/**
+	 * Creates a service bound to the given {@code membership.*} settings, on top of a 5 minute cache TTL and no batch
+	 * lookup of users, the defaults of these tests; settings left out take the defaults of {@link MembershipProperties}.
+	 */
+	private MembershipService newService(final Map<String, String> settings, final WarmStartFile warmStartFile, final MeterRegistry registry) {
+		final Map<String, String> properties = new HashMap<>(Map.of(
+				"membership.cache.ttl", "5m",
+				"membership.join.batch-lookup-max-ids", "0"));
+		properties.putAll(settings);
+		final MembershipProperties membershipProperties = new Binder(new MapConfigurationPropertySource(properties))
+				.bindOrCreate("membership", MembershipProperties.class);
+		return new MembershipService(membershipBackendClient, membershipProperties, warmStartFile, registry);
+	}
+
+	private static WarmStartFile noWarmStart() {
+		return new WarmStartFile("", Duration.ofHours(1));
+	}
 }
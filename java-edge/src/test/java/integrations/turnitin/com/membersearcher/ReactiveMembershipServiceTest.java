@@ -0,0 +1,106 @@
+package integrations.turnitin.com.membersearcher;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import integrations.turnitin.com.membersearcher.client.ReactiveMembershipBackendClient;
+import integrations.turnitin.com.membersearcher.exception.ClientRequestException;
+import integrations.turnitin.com.membersearcher.model.Membership;
+import integrations.turnitin.com.membersearcher.model.User;
+import integrations.turnitin.com.membersearcher.service.ReactiveMembershipService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveMembershipServiceTest {
+
+	@Mock
+	private ReactiveMembershipBackendClient membershipBackendClient;
+
+	private ReactiveMembershipService membershipService;
+	private AtomicInteger membershipsEmitted;
+
+	/**
+	 * Initializes the service over two users and a stream of three memberships.
+	 */
+	@BeforeEach
+	public void init() {
+		membershipService = new ReactiveMembershipService(membershipBackendClient);
+		membershipsEmitted = new AtomicInteger();
+		when(membershipBackendClient.streamUsers()).thenReturn(Flux.just(
+				new User().setId("1").setName("test one").setEmail("test1@example.com"),
+				new User().setId("2").setName("test two").setEmail("test2@example.com")));
+	}
+
+	/**
+	 * Verifies that each membership is joined with its user, in backend order.
+	 */
+	@Test
+	void testStreamMembershipsWithUsers() {
+		when(membershipBackendClient.streamMemberships()).thenReturn(memberships());
+
+		StepVerifier.create(membershipService.streamMembershipsWithUsers())
+				.assertNext(membership -> assertThat(membership.getUser().getName()).isEqualTo("test one"))
+				.assertNext(membership -> assertThat(membership.getUser().getName()).isEqualTo("test two"))
+				.assertNext(membership -> assertThat(membership.getUser()).isNull())
+				.verifyComplete();
+	}
+
+	/**
+	 * Verifies that memberships are only pulled from the backend as fast as the subscriber requests them.
+	 */
+	@Test
+	void testBackpressure() {
+		when(membershipBackendClient.streamMemberships()).thenReturn(memberships());
+
+		StepVerifier.create(membershipService.streamMembershipsWithUsers(), 1)
+				.expectNextCount(1)
+				.then(() -> assertThat(membershipsEmitted.get()).isEqualTo(1))
+				.thenRequest(2)
+				.expectNextCount(2)
+				.verifyComplete();
+	}
+
+	/**
+	 * Verifies that a failed backend call ends the stream without an error, as the servlet service does.
+	 */
+	@Test
+	void testFetchMembershipsException() {
+		when(membershipBackendClient.streamMemberships()).thenReturn(Flux.error(new ClientRequestException("Failed to call URL")));
+
+		StepVerifier.create(membershipService.fetchAllMembershipsWithUsers())
+				.assertNext(list -> assertThat(list.getMemberships()).isEmpty())
+				.verifyComplete();
+	}
+
+	/**
+	 * Verifies that a backend call failing after memberships were emitted fails the stream and the list, rather than
+	 * passing a truncated roster off as complete.
+	 */
+	@Test
+	void testFetchMembershipsFailingPartway() {
+		when(membershipBackendClient.streamMemberships()).thenReturn(memberships().take(2)
+				.concatWith(Flux.error(new ClientRequestException("Connection reset"))));
+
+		StepVerifier.create(membershipService.streamMembershipsWithUsers())
+				.expectNextCount(2)
+				.verifyError(ClientRequestException.class);
+		StepVerifier.create(membershipService.fetchAllMembershipsWithUsers())
+				.verifyError(ClientRequestException.class);
+	}
+
+	private Flux<Membership> memberships() {
+		return Flux.just(
+						new Membership().setId("a").setRole("instructor").setUserId("1"),
+						new Membership().setId("b").setRole("student").setUserId("2"),
+						new Membership().setId("c").setRole("student").setUserId("3"))
+				.doOnNext(membership -> membershipsEmitted.incrementAndGet());
+	}
+}
@@ -0,0 +1,95 @@
+package integrations.turnitin.com.membersearcher;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import integrations.turnitin.com.membersearcher.client.RequestHedger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestHedgerTest {
+
+	private static final String ENDPOINT = "/api.php/members";
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final RequestHedger hedger = new RequestHedger(0.9, meterRegistry);
+	private final List<CompletableFuture<String>> attempts = new CopyOnWriteArrayList<>();
+	private final List<String> discarded = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Verifies that no request is hedged before enough latencies of its endpoint have been recorded.
+	 */
+	@Test
+	void testNoHedgeWithoutLatencies() throws Exception {
+		final CompletableFuture<String> result = hedger.send(ENDPOINT, this::attempt, discarded::add);
+		Thread.sleep(50);
+
+		assertThat(attempts).hasSize(1);
+		attempts.get(0).complete("first");
+		assertThat(result.join()).isEqualTo("first");
+	}
+
+	/**
+	 * Verifies that a request slower than the hedge percentile is duplicated, that the first answer wins,
+	 * and that the slow request is cancelled.
+	 */
+	@Test
+	void testSlowRequestIsHedged() {
+		recordLatencies(TimeUnit.MILLISECONDS.toNanos(1));
+
+		final CompletableFuture<String> result = hedger.send(ENDPOINT, this::attempt, discarded::add);
+		waitForAttempts(2);
+		attempts.get(1).complete("hedge");
+
+		assertThat(result.join()).isEqualTo("hedge");
+		assertThat(attempts.get(0)).isCancelled();
+		assertThat(meterRegistry.counter("backend.hedges", "result", "sent").count()).isEqualTo(1);
+		assertThat(meterRegistry.counter("backend.hedges", "result", "won").count()).isEqualTo(1);
+	}
+
+	/**
+	 * Verifies that the answer of the slower request is discarded, and that the result only fails once every request failed.
+	 */
+	@Test
+	void testLateAnswersAreDiscardedAndFailuresAwaitTheHedge() {
+		recordLatencies(TimeUnit.MILLISECONDS.toNanos(1));
+
+		final CompletableFuture<String> first = hedger.send(ENDPOINT, this::attempt, discarded::add);
+		waitForAttempts(2);
+		attempts.get(0).complete("first");
+		assertThat(attempts.get(1).complete("late")).isFalse();
+		assertThat(first.join()).isEqualTo("first");
+
+		final CompletableFuture<String> second = hedger.send(ENDPOINT, this::attempt, discarded::add);
+		waitForAttempts(4);
+		attempts.get(2).completeExceptionally(new IllegalStateException("failed"));
+		assertThat(second).isNotDone();
+		attempts.get(3).complete("hedge");
+		assertThat(second.join()).isEqualTo("hedge");
+		assertThat(discarded).isEmpty();
+	}
+
+	private void recordLatencies(final long nanos) {
+		for (int i = 0; i < 100; i++) {
+			hedger.record(ENDPOINT, nanos);
+		}
+	}
+
+	private CompletableFuture<String> attempt() {
+		final CompletableFuture<String> attempt = new CompletableFuture<>();
+		attempts.add(attempt);
+		return attempt;
+	}
+
+	private void waitForAttempts(final int count) {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (attempts.size() < count && System.nanoTime() < deadline) {
+			Thread.onSpinWait();
+		}
+		assertThat(attempts).hasSize(count);
+	}
+}
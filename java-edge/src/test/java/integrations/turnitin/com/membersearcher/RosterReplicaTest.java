@@ -0,0 +1,104 @@
+package integrations.turnitin.com.membersearcher;
+
+import java.util.List;
+
+import integrations.turnitin.com.membersearcher.model.Membership;
+import integrations.turnitin.com.membersearcher.model.RosterChange;
+import integrations.turnitin.com.membersearcher.model.User;
+import integrations.turnitin.com.membersearcher.service.MembershipJoiner;
+import integrations.turnitin.com.membersearcher.service.RosterReplica;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RosterReplicaTest {
+
+	private static final String USER_ONE = "8b54349c-5d40-40a3-b03b-40af01f9bafb";
+	private static final String USER_TWO = "f57975d2-e6ae-4f4a-aada-ee6cdcede0d1";
+	private static final String USER_THREE = "62801bc1-d7a7-4b97-be5d-6eb0afb5bc08";
+	private static final String FIRST = "00ad4fc8-e56e-4098-aaf3-1aff93a7bc4c";
+	private static final String SECOND = "5e264f6d-708e-43e6-8932-5928b9ce9a62";
+	private static final String THIRD = "735f68ee-40c1-48ae-8629-db7137c5d6f7";
+
+	private final User userOne = new User().setId(USER_ONE).setName("John Smith").setEmail("JSmith@example.com");
+	private final User userTwo = new User().setId(USER_TWO).setName("Mary Doe").setEmail("MDoe@example.com");
+
+	private RosterReplica replica;
+	private List<Membership> initial;
+
+	/**
+	 * Fills the replica with two memberships of two users.
+	 */
+	@BeforeEach
+	void init() {
+		initial = MembershipJoiner.join(List.of(
+				new Membership().setId(THIRD).setRole("student").setUserId(USER_TWO),
+				new Membership().setId(FIRST).setRole("instructor").setUserId(USER_ONE)),
+				MembershipJoiner.indexUsers(List.of(userOne, userTwo)));
+		replica = new RosterReplica();
+		replica.reset(initial, 10);
+	}
+
+	/**
+	 * Verifies that inserted, updated and deleted memberships are merged in id order, leaving earlier lists untouched.
+	 */
+	@Test
+	void testApplyMergesMembershipChanges() {
+		final List<Membership> applied = replica.apply(List.of(
+				upsert(new Membership().setId(SECOND).setRole("student").setUserId(USER_ONE)),
+				upsert(new Membership().setId(THIRD).setRole("instructor").setUserId(USER_TWO)),
+				delete(RosterChange.MEMBERSHIPS, FIRST)), List.of(), 13);
+
+		assertThat(applied).extracting(Membership::getId).containsExactly(SECOND, THIRD);
+		assertThat(applied).extracting(Membership::getRole).containsExactly("student", "instructor");
+		assertThat(applied).extracting(Membership::getUser).containsExactly(userOne, userTwo);
+		assertThat(replica.getCursor()).isEqualTo(13);
+		assertThat(initial).extracting(Membership::getId).containsExactly(FIRST, THIRD);
+		assertThat(initial.get(1).getRole()).isEqualTo("student");
+	}
+
+	/**
+	 * Verifies that the memberships of an updated or deleted user are joined again, on copies.
+	 */
+	@Test
+	void testApplyRejoinsMembershipsOfChangedUsers() {
+		final User renamed = new User().setId(USER_ONE).setName("John Smythe").setEmail("JSmith@example.com");
+
+		final List<Membership> applied = replica.apply(List.of(
+				new RosterChange().setEntity(RosterChange.USERS).setOp(RosterChange.UPSERT).setId(USER_ONE).setUser(renamed),
+				delete(RosterChange.USERS, USER_TWO)), List.of(), 12);
+
+		assertThat(applied).extracting(Membership::getUser).containsExactly(renamed, null);
+		assertThat(applied.get(0)).isNotSameAs(initial.get(0));
+		assertThat(initial).extracting(Membership::getUser).containsExactly(userOne, userTwo);
+	}
+
+	/**
+	 * Verifies that only the users neither the replica nor the changes hold are reported missing, and are joined once fetched.
+	 */
+	@Test
+	void testMissingUsersAreJoinedOnceFetched() {
+		final User userThree = new User().setId(USER_THREE).setName("Joe Blogs").setEmail("JBlogs@example.com");
+		final List<RosterChange> changes = List.of(
+				upsert(new Membership().setId(SECOND).setRole("student").setUserId(USER_THREE)),
+				upsert(new Membership().setId(FIRST).setRole("student").setUserId(USER_TWO)));
+
+		assertThat(replica.missingUserIds(changes)).containsExactly(USER_THREE);
+
+		final List<Membership> applied = replica.apply(changes, List.of(userThree), 12);
+		assertThat(applied).extracting(Membership::getUser).containsExactly(userTwo, userThree, userTwo);
+	}
+
+	private static RosterChange upsert(final Membership membership) {
+		return new RosterChange()
+				.setEntity(RosterChange.MEMBERSHIPS)
+				.setOp(RosterChange.UPSERT)
+				.setId(membership.getId())
+				.setMembership(membership);
+	}
+
+	private static RosterChange delete(final String entity, final String id) {
+		return new RosterChange().setEntity(entity).setOp(RosterChange.DELETE).setId(id);
+	}
+}
@@ -0,0 +1,51 @@
+package integrations.turnitin.com.membersearcher;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import integrations.turnitin.com.membersearcher.client.SingleFlight;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleFlightTest {
+
+	private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+	private final AtomicInteger started = new AtomicInteger();
+
+	/**
+	 * Verifies that callers arriving while a call is in flight share it, and that
+	 * a caller completing its own future does not affect the others.
+	 */
+	@Test
+	void testConcurrentCallsAreCoalesced() {
+		final CompletableFuture<String> call = new CompletableFuture<>();
+
+		final CompletableFuture<String> first = singleFlight.execute("key", () -> start(call));
+		final CompletableFuture<String> second = singleFlight.execute("key", () -> start(call));
+		second.complete("overridden by caller");
+		call.complete("value");
+
+		assertThat(first.join()).isEqualTo("value");
+		assertThat(started.get()).isEqualTo(1);
+		assertThat(singleFlight.getCoalesced()).isEqualTo(1);
+	}
+
+	/**
+	 * Verifies that the key is released once the call completes, and that distinct keys never share a call.
+	 */
+	@Test
+	void testCompletedCallsAreNotShared() {
+		singleFlight.execute("key", () -> start(CompletableFuture.completedFuture("one"))).join();
+		singleFlight.execute("key", () -> start(CompletableFuture.completedFuture("two"))).join();
+		singleFlight.execute("other", () -> start(new CompletableFuture<>()));
+
+		assertThat(started.get()).isEqualTo(3);
+		assertThat(singleFlight.getCoalesced()).isZero();
+	}
+
+	private CompletableFuture<String> start(final CompletableFuture<String> call) {
+		started.incrementAndGet();
+		return call;
+	}
+}
@@ -0,0 +1,130 @@
+package integrations.turnitin.com.membersearcher;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import integrations.turnitin.com.membersearcher.cache.SnapshotCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SnapshotCacheTest {
+
+	private MutableClock clock;
+	private AtomicInteger loads;
+	private CompletableFuture<String> nextLoad;
+	private SnapshotCache<String> cache;
+
+	/**
+	 * Initializes a cache whose loader hands out {@code nextLoad} and counts its invocations.
+	 */
+	@BeforeEach
+	public void init() {
+		clock = new MutableClock(Instant.parse("2023-07-01T00:00:00Z"));
+		loads = new AtomicInteger();
+		nextLoad = CompletableFuture.completedFuture("v1");
+		cache = new SnapshotCache<>(() -> {
+			loads.incrementAndGet();
+			return nextLoad;
+		}, Duration.ofSeconds(30), clock);
+	}
+
+	/**
+	 * Verifies that the first call loads the value and later calls within the TTL are hits.
+	 */
+	@Test
+	void testServesSnapshotWithinTtl() {
+		assertThat(cache.get().join()).isEqualTo("v1");
+		clock.advance(Duration.ofSeconds(10));
+		assertThat(cache.get().join()).isEqualTo("v1");
+
+		assertThat(loads.get()).isEqualTo(1);
+		assertThat(cache.getMisses()).isEqualTo(1);
+		assertThat(cache.getHits()).isEqualTo(1);
+	}
+
+	/**
+	 * Verifies that an expired snapshot is still served while the refresh is pending,
+	 * and replaced once the refresh completes.
+	 */
+	@Test
+	void testServesStaleSnapshotWhileRevalidating() {
+		cache.get().join();
+		clock.advance(Duration.ofSeconds(31));
+		final CompletableFuture<String> refresh = new CompletableFuture<>();
+		nextLoad = refresh;
+
+		assertThat(cache.get().join()).isEqualTo("v1");
+		assertThat(cache.get().join()).isEqualTo("v1");
+		assertThat(loads.get()).isEqualTo(2);
+
+		refresh.complete("v2");
+		assertThat(cache.get().join()).isEqualTo("v2");
+		assertThat(cache.getRefreshes()).isEqualTo(2);
+	}
+
+	/**
+	 * Verifies that a failed refresh keeps the previous snapshot.
+	 */
+	@Test
+	void testFailedRefreshKeepsSnapshot() {
+		cache.get().join();
+		clock.advance(Duration.ofSeconds(31));
+		nextLoad = CompletableFuture.failedFuture(new RuntimeException("backend down"));
+
+		assertThat(cache.get().join()).isEqualTo("v1");
+		assertThat(cache.getRefreshFailures()).isEqualTo(1);
+		assertThat(cache.getSnapshot()).isPresent();
+	}
+
+	/**
+	 * Verifies that a seeded value is served without loading until it expires, and that a seed never replaces
+	 * a loaded snapshot.
+	 */
+	@Test
+	void testServesSeedUntilItExpires() {
+		assertThat(cache.seed("seed", clock.instant().minusSeconds(20))).isTrue();
+		assertThat(cache.get().join()).isEqualTo("seed");
+		assertThat(loads.get()).isZero();
+
+		clock.advance(Duration.ofSeconds(11));
+		assertThat(cache.get().join()).isEqualTo("seed");
+		assertThat(loads.get()).isEqualTo(1);
+		assertThat(cache.get().join()).isEqualTo("v1");
+		assertThat(cache.seed("late", clock.instant())).isFalse();
+	}
+
+	private static final class MutableClock extends Clock {
+
+		private Instant now;
+
+		private MutableClock(final Instant now) {
+			this.now = now;
+		}
+
+		private void advance(final Duration duration) {
+			now = now.plus(duration);
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(final ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+			return now;
+		}
+	}
+}
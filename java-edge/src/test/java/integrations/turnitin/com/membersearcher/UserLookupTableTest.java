@@ -0,0 +1,115 @@
+package integrations.turnitin.com.membersearcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import integrations.turnitin.com.membersearcher.model.Membership;
+import integrations.turnitin.com.membersearcher.model.User;
+import integrations.turnitin.com.membersearcher.service.MembershipJoiner;
+import integrations.turnitin.com.membersearcher.service.UserLookupTable;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserLookupTableTest {
+
+	private static final String USER_ID = "8b54349c-5d40-40a3-b03b-40af01f9bafb";
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	/**
+	 * Verifies that users are found by packed and unpacked ids alike, including after the table has grown.
+	 */
+	@Test
+	void testLookup() {
+		final List<User> users = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			users.add(new User().setId(UUID.randomUUID().toString()).setName("user " + i));
+		}
+		users.add(new User().setId("legacy-1").setName("legacy"));
+		final UserLookupTable userTable = new UserLookupTable(0);
+		users.forEach(userTable::put);
+
+		assertThat(userTable.size()).isEqualTo(1001);
+		for (final User user : users) {
+			assertThat(userTable.get(new Membership().setUserId(user.getId()))).isSameAs(user);
+		}
+		assertThat(userTable.get(new Membership().setUserId(UUID.randomUUID().toString()))).isNull();
+		assertThat(userTable.get(new Membership())).isNull();
+	}
+
+	/**
+	 * Verifies that removed users are no longer found, while the users sharing their probe sequences still are.
+	 */
+	@Test
+	void testRemove() {
+		final List<User> users = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			users.add(new User().setId(UUID.randomUUID().toString()));
+		}
+		users.add(new User().setId("legacy-1"));
+		final UserLookupTable userTable = new UserLookupTable(0);
+		users.forEach(userTable::put);
+
+		for (int i = 0; i < users.size(); i += 2) {
+			userTable.remove(users.get(i).getId());
+		}
+		userTable.remove(UUID.randomUUID().toString());
+
+		assertThat(userTable.size()).isEqualTo(500);
+		for (int i = 0; i < users.size(); i++) {
+			assertThat(userTable.get(new Membership().setUserId(users.get(i).getId()))).isSameAs(i % 2 == 0 ? null : users.get(i));
+		}
+	}
+
+	/**
+	 * Verifies that a duplicate user id no longer fails the join; the last user wins.
+	 */
+	@Test
+	void testDuplicateIdsLastWins() {
+		final User first = new User().setId(USER_ID).setName("first");
+		final User second = new User().setId(USER_ID).setName("second");
+
+		final UserLookupTable userTable = MembershipJoiner.indexUsers(List.of(first, second));
+
+		assertThat(userTable.size()).isEqualTo(1);
+		assertThat(userTable.get(new Membership().setUserId(USER_ID))).isSameAs(second);
+	}
+
+	/**
+	 * Verifies that memberships are ordered by id whether or not their ids are packed.
+	 */
+	@Test
+	void testJoinOrdersById() {
+		final List<Membership> memberships = List.of(
+				new Membership().setId("f57975d2-e6ae-4f4a-aada-ee6cdcede0d1"),
+				new Membership().setId("NOT-A-UUID"),
+				new Membership().setId("00ad4fc8-e56e-4098-aaf3-1aff93a7bc4c"),
+				new Membership().setId("a0ad4fc8-e56e-4098-aaf3-1aff93a7bc4c"));
+
+		assertThat(MembershipJoiner.join(memberships, new UserLookupTable(0)))
+				.extracting(Membership::getId)
+				.containsExactly("00ad4fc8-e56e-4098-aaf3-1aff93a7bc4c", "NOT-A-UUID",
+						"a0ad4fc8-e56e-4098-aaf3-1aff93a7bc4c", "f57975d2-e6ae-4f4a-aada-ee6cdcede0d1");
+	}
+
+	/**
+	 * Verifies that the compact model reads and writes the same JSON as before, ids byte for byte.
+	 */
+	@Test
+	void testJsonContractIsUnchanged() throws Exception {
+		final String json = "{\"id\":\"00ad4fc8-e56e-4098-aaf3-1aff93a7bc4c\",\"role\":\"instructor\","
+				+ "\"user\":{\"id\":\"8B54349C-5D40-40A3-B03B-40AF01F9BAFB\",\"name\":\"John Smith\",\"email\":\"JSmith@example.com\"},"
+				+ "\"user_id\":\"" + USER_ID + "\"}";
+
+		final Membership membership = objectMapper.readValue(json, Membership.class);
+
+		assertThat(membership.hasPackedId()).isTrue();
+		assertThat(membership.getUser().hasPackedId()).isFalse();
+		assertThat(objectMapper.writeValueAsString(membership)).isEqualTo(json);
+		assertThat(objectMapper.writeValueAsString(new Membership()))
+				.isEqualTo("{\"id\":null,\"role\":null,\"user\":null,\"user_id\":null}");
+	}
+}
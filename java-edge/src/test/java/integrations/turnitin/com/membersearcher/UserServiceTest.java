@@ -0,0 +1,121 @@
+package integrations.turnitin.com.membersearcher;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import integrations.turnitin.com.membersearcher.client.MembershipBackendClient;
+import integrations.turnitin.com.membersearcher.exception.ClientRequestException;
+import integrations.turnitin.com.membersearcher.exception.InvalidRequestException;
+import integrations.turnitin.com.membersearcher.exception.NotFoundException;
+import integrations.turnitin.com.membersearcher.model.User;
+import integrations.turnitin.com.membersearcher.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class UserServiceTest {
+
+	private static final String USER_ID = "0b3e8c1a-6f4e-4b0a-9c3d-2f1e5a7b9c11";
+	private static final String UNKNOWN_ID = "0b3e8c1a-6f4e-4b0a-9c3d-2f1e5a7b9c12";
+
+	private UserService userService;
+	private SimpleMeterRegistry meterRegistry;
+	@Mock
+	private MembershipBackendClient membershipBackendClient;
+
+	/**
+	 * Initializes a service with a small cache, maintained on the calling thread, backed by a client that knows one user.
+	 */
+	@BeforeEach
+	public void init() {
+		meterRegistry = new SimpleMeterRegistry();
+		userService = new UserService(membershipBackendClient, 50, Duration.ofMinutes(5), Duration.ofSeconds(30), Runnable::run, meterRegistry);
+
+		when(membershipBackendClient.fetchUser(anyString())).thenAnswer(invocation -> {
+			final String id = invocation.getArgument(0);
+			return id.equals(USER_ID)
+					? CompletableFuture.completedFuture(new User().setId(id).setName("test one").setEmail("test1@example.com"))
+					: CompletableFuture.failedFuture(new CompletionException(new NotFoundException("Not found: " + id)));
+		});
+	}
+
+	/**
+	 * Verifies that a user is fetched once, then served from the cache, and that the hits are counted.
+	 */
+	@Test
+	void testServesCachedUser() {
+		assertThat(userService.fetchUser(USER_ID).join().getName()).isEqualTo("test one");
+		assertThat(userService.fetchUser(USER_ID.toUpperCase()).join().getName()).isEqualTo("test one");
+		assertThat(userService.fetchUser(USER_ID).join().getName()).isEqualTo("test one");
+
+		verify(membershipBackendClient, times(1)).fetchUser(USER_ID);
+		assertThat(meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "hit").functionCounter().count()).isEqualTo(2);
+		assertThat(meterRegistry.get("cache.hit.ratio").gauge().value()).isEqualTo(2.0 / 3);
+	}
+
+	/**
+	 * Verifies that an unknown id fails with a not found error and is remembered, so asking again costs no backend call.
+	 */
+	@Test
+	void testCachesUnknownUser() {
+		assertThatThrownBy(() -> userService.fetchUser(UNKNOWN_ID).join()).hasCauseInstanceOf(NotFoundException.class);
+		assertThatThrownBy(() -> userService.fetchUser(UNKNOWN_ID).join()).hasCauseInstanceOf(NotFoundException.class);
+
+		verify(membershipBackendClient, times(1)).fetchUser(UNKNOWN_ID);
+	}
+
+	/**
+	 * Verifies that a failed fetch is not cached, so the next lookup asks the backend again.
+	 */
+	@Test
+	void testDoesNotCacheFailures() {
+		when(membershipBackendClient.fetchUser(USER_ID))
+				.thenReturn(CompletableFuture.failedFuture(new CompletionException(new ClientRequestException("Bad Request"))))
+				.thenReturn(CompletableFuture.completedFuture(new User().setId(USER_ID).setName("test one")));
+
+		assertThatThrownBy(() -> userService.fetchUser(USER_ID).join()).hasCauseInstanceOf(ClientRequestException.class);
+		assertThat(userService.fetchUser(USER_ID).join().getName()).isEqualTo("test one");
+
+		verify(membershipBackendClient, times(2)).fetchUser(USER_ID);
+	}
+
+	/**
+	 * Verifies that a frequently requested user stays cached while a scan over many cold ids passes through.
+	 */
+	@Test
+	void testKeepsHotUserThroughScan() {
+		for (int i = 0; i < 1000; i++) {
+			if (i % 10 == 0) {
+				userService.fetchUser(USER_ID).join();
+			}
+			final String coldId = String.format("00000000-0000-4000-8000-%012d", i);
+			assertThatThrownBy(() -> userService.fetchUser(coldId).join()).hasCauseInstanceOf(NotFoundException.class);
+		}
+
+		verify(membershipBackendClient, times(1)).fetchUser(USER_ID);
+		verify(membershipBackendClient, times(1001)).fetchUser(anyString());
+	}
+
+	/**
+	 * Verifies that an id that is not a UUID is rejected without asking the backend.
+	 */
+	@Test
+	void testRejectsInvalidId() {
+		assertThatThrownBy(() -> userService.fetchUser("not-a-user")).isInstanceOf(InvalidRequestException.class);
+
+		verify(membershipBackendClient, never()).fetchUser(anyString());
+	}
+}
@@ -0,0 +1,79 @@
+package integrations.turnitin.com.membersearcher;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import integrations.turnitin.com.membersearcher.model.Membership;
+import integrations.turnitin.com.membersearcher.model.User;
+import integrations.turnitin.com.membersearcher.service.WarmStartFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WarmStartFileTest {
+
+	private static final Instant SAVED_AT = Instant.parse("2023-07-01T00:00:00Z");
+
+	@TempDir
+	private Path directory;
+
+	/**
+	 * Verifies that a saved roster is read back with its cursor and the instant it was loaded.
+	 */
+	@Test
+	void testRoundTrip() {
+		final WarmStartFile file = file(Duration.ofHours(1));
+		file.save(List.of(new Membership()
+				.setId("3f1c1b6e-7a1d-4b6e-9c39-1f0b4c5d6e7f")
+				.setUserId("1")
+				.setRole("student")
+				.setUser(new User().setId("1").setName("test one").setEmail("test1@example.com"))), 42, SAVED_AT);
+
+		final WarmStartFile.WarmStart loaded = file.load(SAVED_AT.plusSeconds(60)).orElseThrow();
+
+		assertThat(loaded.savedAt()).isEqualTo(SAVED_AT.toEpochMilli());
+		assertThat(loaded.cursor()).isEqualTo(42);
+		assertThat(loaded.memberships()).singleElement().satisfies(membership -> {
+			assertThat(membership.getId()).isEqualTo("3f1c1b6e-7a1d-4b6e-9c39-1f0b4c5d6e7f");
+			assertThat(membership.getRole()).isEqualTo("student");
+			assertThat(membership.getUser().getEmail()).isEqualTo("test1@example.com");
+		});
+		assertThat(directory.resolve("roster.cbor.tmp")).doesNotExist();
+	}
+
+	/**
+	 * Verifies that a roster older than the maximum age, a missing file and an unreadable file are all ignored.
+	 */
+	@Test
+	void testIgnoresStaleMissingAndUnreadableFiles() throws Exception {
+		final WarmStartFile file = file(Duration.ofHours(1));
+		assertThat(file.load(SAVED_AT)).isEmpty();
+
+		file.save(List.of(new Membership().setId("a").setUserId("1")), -1, SAVED_AT);
+		assertThat(file.load(SAVED_AT.plus(Duration.ofMinutes(59)))).isPresent();
+		assertThat(file.load(SAVED_AT.plus(Duration.ofMinutes(61)))).isEmpty();
+
+		Files.write(directory.resolve("roster.cbor"), new byte[] {1, 2, 3});
+		assertThat(file.load(SAVED_AT)).isEmpty();
+	}
+
+	/**
+	 * Verifies that nothing is saved or loaded without a file.
+	 */
+	@Test
+	void testDisabledWithoutFile() {
+		final WarmStartFile file = new WarmStartFile("", Duration.ofHours(1));
+		file.save(List.of(new Membership().setId("a")), -1, SAVED_AT);
+
+		assertThat(file.isEnabled()).isFalse();
+		assertThat(file.load(SAVED_AT)).isEmpty();
+	}
+
+	private WarmStartFile file(final Duration maxAge) {
+		return new WarmStartFile(directory.resolve("roster.cbor").toString(), maxAge);
+	}
+}
@@ -1,27 +1,73 @@
 CREATE TABLE users
 (
-    id    UUID NOT NULL,
-    name  TEXT NOT NULL,
-    email TEXT NOT NULL,
+    id         UUID        NOT NULL,
+    name       TEXT        NOT NULL,
+    email      TEXT        NOT NULL,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT now(),
 
     CONSTRAINT pk_users PRIMARY KEY (id)
 );
 
 CREATE TABLE memberships
 (
-    id      UUID NOT NULL,
-    user_id UUID REFERENCES users(id),
-    role    TEXT NOT NULL,
+    id         UUID        NOT NULL,
+    user_id    UUID REFERENCES users(id),
+    role       TEXT        NOT NULL,
+    course_id  UUID        NOT NULL,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT now(),
 
     CONSTRAINT pk_memberships PRIMARY KEY (id)
 );
 
+-- Serves the memberships of one course in id order, as the paginated course roster asks for them.
+CREATE INDEX idx_memberships_course_id ON memberships (course_id, id);
+-- Serves the join of memberships with their users, and the lookup of the memberships of a user.
+CREATE INDEX idx_memberships_user_id ON memberships (user_id);
+
+-- Every insert, update and delete of a user or membership, in the order they were committed.
+-- Clients keep a copy of the tables up to date by following this log from the last seq they have seen.
+-- Old entries may be pruned; a client behind the oldest entry then fetches the tables again. The newest entry is
+-- never pruned, as its seq versions the responses built from the tables.
+CREATE TABLE roster_changes
+(
+    seq        BIGSERIAL   NOT NULL,
+    entity     TEXT        NOT NULL,
+    entity_id  UUID        NOT NULL,
+    changed_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+
+    CONSTRAINT pk_roster_changes PRIMARY KEY (seq)
+);
+
+CREATE FUNCTION touch_updated_at() RETURNS trigger AS $$
+BEGIN
+    NEW.updated_at = now();
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION log_roster_change() RETURNS trigger AS $$
+BEGIN
+    -- Writers of the log take turns until they commit, so a seq is never committed after a greater one
+    -- and a client never moves past a change that is yet to become visible.
+    PERFORM pg_advisory_xact_lock(hashtext('roster_changes'));
+    IF TG_OP = 'UPDATE' AND NEW.id <> OLD.id THEN
+        INSERT INTO roster_changes (entity, entity_id) VALUES (TG_TABLE_NAME, OLD.id);
+    END IF;
+    INSERT INTO roster_changes (entity, entity_id) VALUES (TG_TABLE_NAME, COALESCE(NEW.id, OLD.id));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER users_updated_at BEFORE UPDATE ON users FOR EACH ROW EXECUTE FUNCTION touch_updated_at();
+CREATE TRIGGER users_changes AFTER INSERT OR UPDATE OR DELETE ON users FOR EACH ROW EXECUTE FUNCTION log_roster_change();
+CREATE TRIGGER memberships_updated_at BEFORE UPDATE ON memberships FOR EACH ROW EXECUTE FUNCTION touch_updated_at();
+CREATE TRIGGER memberships_changes AFTER INSERT OR UPDATE OR DELETE ON memberships FOR EACH ROW EXECUTE FUNCTION log_roster_change();
+
 INSERT INTO users VALUES('8b54349c-5d40-40a3-b03b-40af01f9bafb', 'John Smith', 'JSmith@example.com');
 INSERT INTO users VALUES('f57975d2-e6ae-4f4a-aada-ee6cdcede0d1', 'Mary Doe', 'MDoe@example.com');
 INSERT INTO users VALUES('62801bc1-d7a7-4b97-be5d-6eb0afb5bc08', 'Joe Blogs', 'JBlogs@example.com');
 INSERT INTO users VALUES('79ee0f46-c2bd-4b7e-a670-adf1a2537385', 'Bob James', 'BJames@example.com');
 
-INSERT INTO memberships VALUES('00ad4fc8-e56e-4098-aaf3-1aff93a7bc4c', '8b54349c-5d40-40a3-b03b-40af01f9bafb', 'instructor');
-INSERT INTO memberships VALUES('5e264f6d-708e-43e6-8932-5928b9ce9a62', 'f57975d2-e6ae-4f4a-aada-ee6cdcede0d1', 'student');
-INSERT INTO memberships VALUES('735f68ee-40c1-48ae-8629-db7137c5d6f7', '62801bc1-d7a7-4b97-be5d-6eb0afb5bc08', 'student');
-
+INSERT INTO memberships VALUES('00ad4fc8-e56e-4098-aaf3-1aff93a7bc4c', '8b54349c-5d40-40a3-b03b-40af01f9bafb', 'instructor', 'c0a80101-0000-4000-8000-000000000001');
+INSERT INTO memberships VALUES('5e264f6d-708e-43e6-8932-5928b9ce9a62', 'f57975d2-e6ae-4f4a-aada-ee6cdcede0d1', 'student', 'c0a80101-0000-4000-8000-000000000001');
+INSERT INTO memberships VALUES('735f68ee-40c1-48ae-8629-db7137c5d6f7', '62801bc1-d7a7-4b97-be5d-6eb0afb5bc08', 'student', 'c0a80101-0000-4000-8000-000000000002');
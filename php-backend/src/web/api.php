@@ -7,41 +7,468 @@ if (count($pathInfo) < 2) {
     ]);
     exit;
 }
-$dbconn = pg_connect("host=db dbname=postgres user=postgres password=postgres");
+// A persistent connection is reused by the later requests served by the same worker, which then skip the connection setup.
+$dbconn = pg_pconnect("host=db dbname=postgres user=postgres password=postgres");
+
+const MAX_PAGE_LIMIT = 1000;
+const MAX_BATCH_IDS = 1000;
+const NDJSON_FLUSH_INTERVAL = 256;
+const UUID_PATTERN = '/^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$/i';
+const TABLE_COLUMNS = [
+    'memberships' => 'id, user_id, role',
+    'users' => 'id, name, email'
+];
+
+/**
+ * Builds the WHERE clause of a query from its conditions, which may be none.
+ */
+function where_clause($conditions) {
+    return count($conditions) === 0 ? '' : ' WHERE ' . implode(' AND ', $conditions);
+}
+
+/**
+ * Fetches the rows of a table ordered by id, restricted to the rows of one course when a course id is given.
+ * When a `limit` query parameter is given only one page is returned: the rows whose id follows
+ * the `after` cursor (the last id of the previous page), plus the cursor of the next page, or
+ * null when there are no more rows.
+ */
+function fetch_rows($dbconn, $table, $key, $courseId = null) {
+    $columns = TABLE_COLUMNS[$table];
+    $conditions = [];
+    $params = [];
+    if ($courseId !== null) {
+        $params[] = $courseId;
+        $conditions[] = 'course_id = $' . count($params);
+    }
+    if (!isset($_GET['limit'])) {
+        $result = pg_query_params($dbconn, "SELECT $columns FROM $table" . where_clause($conditions) . " ORDER BY id", $params);
+        $rows = [];
+        while($row = pg_fetch_assoc($result)) {
+            $rows[] = $row;
+        }
+        return [
+            $key => $rows
+        ];
+    }
+
+    $limit = max(1, min(MAX_PAGE_LIMIT, (int) $_GET['limit']));
+    $after = $_GET['after'] ?? null;
+    if ($after !== null && !preg_match(UUID_PATTERN, $after)) {
+        http_response_code(400);
+        return [
+            'error' => 'Invalid cursor'
+        ];
+    }
+
+    if ($after !== null) {
+        $params[] = $after;
+        $conditions[] = 'id > $' . count($params);
+    }
+    $params[] = $limit;
+    $result = pg_query_params($dbconn, "SELECT $columns FROM $table" . where_clause($conditions) . ' ORDER BY id LIMIT $' . count($params), $params);
+    $rows = [];
+    while($row = pg_fetch_assoc($result)) {
+        $rows[] = $row;
+    }
+    return [
+        $key => $rows,
+        'next_cursor' => count($rows) === $limit ? $rows[count($rows) - 1]['id'] : null
+    ];
+}
+
+/**
+ * Fetches the memberships ordered by id, each with its user joined in by the database, restricted to the memberships
+ * of one course when a course id is given. A membership whose user does not exist has a null user.
+ * Pagination follows the `limit` and `after` query parameters as in fetch_rows.
+ */
+function fetch_members_with_users($dbconn, $courseId = null) {
+    $conditions = [];
+    $params = [];
+    if ($courseId !== null) {
+        $params[] = $courseId;
+        $conditions[] = 'm.course_id = $' . count($params);
+    }
+    $limit = null;
+    if (isset($_GET['limit'])) {
+        $limit = max(1, min(MAX_PAGE_LIMIT, (int) $_GET['limit']));
+        $after = $_GET['after'] ?? null;
+        if ($after !== null && !preg_match(UUID_PATTERN, $after)) {
+            http_response_code(400);
+            return [
+                'error' => 'Invalid cursor'
+            ];
+        }
+        if ($after !== null) {
+            $params[] = $after;
+            $conditions[] = 'm.id > $' . count($params);
+        }
+    }
+
+    $query = 'SELECT m.id, m.user_id, m.role, u.id AS user_found, u.name, u.email
+              FROM memberships m LEFT JOIN users u ON u.id = m.user_id' . where_clause($conditions) . ' ORDER BY m.id';
+    if ($limit !== null) {
+        $params[] = $limit;
+        $query .= ' LIMIT $' . count($params);
+    }
+    $result = pg_query_params($dbconn, $query, $params);
+    $memberships = [];
+    while($row = pg_fetch_assoc($result)) {
+        $memberships[] = [
+            'id' => $row['id'],
+            'user_id' => $row['user_id'],
+            'role' => $row['role'],
+            'user' => $row['user_found'] === null ? null : ['id' => $row['user_found'], 'name' => $row['name'], 'email' => $row['email']]
+        ];
+    }
+    if ($limit === null) {
+        return [
+            'memberships' => $memberships
+        ];
+    }
+    return [
+        'memberships' => $memberships,
+        'next_cursor' => count($memberships) === $limit ? $memberships[count($memberships) - 1]['id'] : null
+    ];
+}
+
+/**
+ * Whether the client asked for newline-delimited JSON, which lets it decode the rows one at a time.
+ */
+function wants_ndjson() {
+    return strpos($_SERVER['HTTP_ACCEPT'] ?? '', 'application/x-ndjson') !== false;
+}
+
+/**
+ * Writes every row of a table ordered by id as newline-delimited JSON, one row per line, restricted to the rows of
+ * one course when a course id is given.
+ * Rows are written as they are fetched and flushed in small batches, so the response is never built in memory.
+ */
+function stream_rows($dbconn, $table, $courseId = null) {
+    header('Content-Type: application/x-ndjson');
+    $columns = TABLE_COLUMNS[$table];
+    if ($courseId === null) {
+        $result = pg_query_params($dbconn, "SELECT $columns FROM $table ORDER BY id", []);
+    } else {
+        $result = pg_query_params($dbconn, "SELECT $columns FROM $table WHERE course_id = $1 ORDER BY id", [$courseId]);
+    }
+    $written = 0;
+    while($row = pg_fetch_assoc($result)) {
+        echo json_encode($row), "\n";
+        if (++$written % NDJSON_FLUSH_INTERVAL === 0) {
+            flush();
+        }
+    }
+}
+
+/**
+ * Fetches the users with the given comma separated ids in a single indexed lookup.
+ * Unknown ids are left out of the result.
+ */
+function fetch_users_by_ids($dbconn, $ids) {
+    $ids = array_values(array_unique(array_filter(explode(',', $ids), 'strlen')));
+    if (count($ids) > MAX_BATCH_IDS) {
+        http_response_code(400);
+        return [
+            'error' => 'Too many ids'
+        ];
+    }
+    foreach ($ids as $id) {
+        if (!preg_match(UUID_PATTERN, $id)) {
+            http_response_code(400);
+            return [
+                'error' => 'Invalid id'
+            ];
+        }
+    }
+
+    $result = pg_query_params($dbconn, 'SELECT id, name, email FROM users WHERE id = ANY($1::uuid[])', ['{' . implode(',', $ids) . '}']);
+    $users = [];
+    while($user = pg_fetch_assoc($result)) {
+        $users[] = $user;
+    }
+    return [
+        'users' => $users
+    ];
+}
+
+/**
+ * Fetches the changes made to memberships and users after the `since` cursor, in the order they were committed,
+ * at most `limit` at a time, plus the cursor to continue from and whether more changes follow.
+ * A change carries the current row, or is a deletion when the row no longer exists, so a client applying the
+ * changes in order brings its copy of the tables up to date, even when a row changed several times.
+ * Without `since` no changes are returned, only the cursor to start following the changes from.
+ * When the log no longer holds every change after `since`, `reset` tells the client to fetch the tables again.
+ */
+function fetch_changes($dbconn) {
+    $bounds = pg_fetch_row(pg_query($dbconn, 'SELECT MIN(seq), MAX(seq) FROM roster_changes'));
+    $head = (int) ($bounds[1] ?? 0);
+    if (!isset($_GET['since'])) {
+        return [
+            'changes' => [],
+            'cursor' => $head,
+            'has_more' => false,
+            'reset' => false
+        ];
+    }
+    if (!ctype_digit($_GET['since'])) {
+        http_response_code(400);
+        return [
+            'error' => 'Invalid cursor'
+        ];
+    }
+
+    $since = (int) $_GET['since'];
+    if ($since > $head || ($bounds[0] !== null && $since < (int) $bounds[0] - 1)) {
+        return [
+            'changes' => [],
+            'cursor' => $head,
+            'has_more' => false,
+            'reset' => true
+        ];
+    }
+
+    $limit = max(1, min(MAX_PAGE_LIMIT, (int) ($_GET['limit'] ?? MAX_PAGE_LIMIT)));
+    $result = pg_query_params($dbconn,
+        "SELECT c.seq, c.entity, c.entity_id, m.user_id, m.role, u.name, u.email, m.id IS NULL AND u.id IS NULL AS deleted
+         FROM roster_changes c
+         LEFT JOIN memberships m ON c.entity = 'memberships' AND m.id = c.entity_id
+         LEFT JOIN users u ON c.entity = 'users' AND u.id = c.entity_id
+         WHERE c.seq > $1 ORDER BY c.seq LIMIT $2", [$since, $limit]);
+    $changes = [];
+    $cursor = $since;
+    while($row = pg_fetch_assoc($result)) {
+        $cursor = (int) $row['seq'];
+        $change = [
+            'seq' => $cursor,
+            'entity' => $row['entity'],
+            'op' => $row['deleted'] === 't' ? 'delete' : 'upsert',
+            'id' => $row['entity_id']
+        ];
+        if ($row['deleted'] !== 't' && $row['entity'] === 'memberships') {
+            $change['membership'] = ['id' => $row['entity_id'], 'user_id' => $row['user_id'], 'role' => $row['role']];
+        } else if ($row['deleted'] !== 't') {
+            $change['user'] = ['id' => $row['entity_id'], 'name' => $row['name'], 'email' => $row['email']];
+        }
+        $changes[] = $change;
+    }
+    return [
+        'changes' => $changes,
+        'cursor' => $cursor,
+        'has_more' => count($changes) === $limit,
+        'reset' => false
+    ];
+}
+
+/**
+ * Whether the client accepts CBOR, the binary encoding of the same data, which is smaller and cheaper to parse.
+ */
+function wants_cbor() {
+    return preg_match('#application/cbor(?!\s*;\s*q=0(\.0*)?\s*(,|$))#', $_SERVER['HTTP_ACCEPT'] ?? '') === 1;
+}
+
+/**
+ * Encodes a value as CBOR (RFC 8949): null, booleans, integers, floats, strings, lists and string-keyed maps.
+ */
+function cbor_encode($value) {
+    if ($value === null) {
+        return "\xf6";
+    }
+    if (is_bool($value)) {
+        return $value ? "\xf5" : "\xf4";
+    }
+    if (is_int($value)) {
+        return $value >= 0 ? cbor_head(0, $value) : cbor_head(1, -1 - $value);
+    }
+    if (is_float($value)) {
+        return "\xfb" . pack('E', $value);
+    }
+    if (is_string($value)) {
+        return cbor_head(3, strlen($value)) . $value;
+    }
+    if (is_array($value) && array_is_list($value)) {
+        $out = cbor_head(4, count($value));
+        foreach ($value as $item) {
+            $out .= cbor_encode($item);
+        }
+        return $out;
+    }
+    if (is_array($value)) {
+        $out = cbor_head(5, count($value));
+        foreach ($value as $key => $item) {
+            $out .= cbor_encode((string) $key) . cbor_encode($item);
+        }
+        return $out;
+    }
+    throw new InvalidArgumentException('Cannot encode ' . gettype($value) . ' as CBOR');
+}
+
+/**
+ * Encodes the head of a CBOR data item: its major type and its argument, a length or an unsigned integer.
+ */
+function cbor_head($major, $argument) {
+    $type = $major << 5;
+    if ($argument < 24) {
+        return chr($type | $argument);
+    }
+    if ($argument < 0x100) {
+        return chr($type | 24) . chr($argument);
+    }
+    if ($argument < 0x10000) {
+        return chr($type | 25) . pack('n', $argument);
+    }
+    if ($argument < 0x100000000) {
+        return chr($type | 26) . pack('N', $argument);
+    }
+    return chr($type | 27) . pack('J', $argument);
+}
+
+/**
+ * Whether a response with the given header has been prepared.
+ */
+function has_header($name) {
+    foreach (headers_list() as $header) {
+        if (stripos($header, $name . ':') === 0) {
+            return true;
+        }
+    }
+    return false;
+}
+
+/**
+ * Whether the request asks to revalidate one of the given entity tags.
+ */
+function if_none_match($etag) {
+    $ifNoneMatch = array_map('trim', explode(',', $_SERVER['HTTP_IF_NONE_MATCH'] ?? ''));
+    return in_array($etag, $ifNoneMatch, true) || in_array('*', $ifNoneMatch, true);
+}
+
+/**
+ * Tags the response with validators taken from the change log before any row is read, and answers 304 Not Modified
+ * when the client already holds the current data, so revalidating unchanged data costs one indexed lookup of the
+ * newest change instead of the query and encoding of the rows.
+ * Every change to the users and memberships is logged under a new seq, so the newest seq (with the oldest, which
+ * decides whether the change feed asks for a reset) versions every resource built from them. The validators are
+ * read before the rows, so a response is never tagged with a version newer than its data.
+ * The Last-Modified date, to the second, only applies when the request carries no If-None-Match.
+ * Returns whether the response still has to be sent; when the log is empty send_response hashes the body instead.
+ */
+function is_modified($dbconn) {
+    $version = pg_fetch_row(pg_query($dbconn,
+        'SELECT (SELECT MIN(seq) FROM roster_changes), seq, EXTRACT(EPOCH FROM changed_at)::bigint
+         FROM roster_changes ORDER BY seq DESC LIMIT 1'));
+    if ($version === false) {
+        return true;
+    }
+    $etag = '"' . $version[1] . '.' . $version[0] . (wants_cbor() ? '-cbor' : '-json') . '"';
+    $modifiedAt = (int) $version[2];
+    header('Vary: Accept');
+    header('ETag: ' . $etag);
+    header('Last-Modified: ' . gmdate('D, d M Y H:i:s', $modifiedAt) . ' GMT');
+    if (isset($_SERVER['HTTP_IF_NONE_MATCH'])) {
+        $notModified = if_none_match($etag);
+    } else {
+        $since = isset($_SERVER['HTTP_IF_MODIFIED_SINCE']) ? strtotime($_SERVER['HTTP_IF_MODIFIED_SINCE']) : false;
+        $notModified = $since !== false && $modifiedAt <= $since;
+    }
+    if ($notModified) {
+        http_response_code(304);
+        return false;
+    }
+    return true;
+}
+
+/**
+ * Sends the response built by the given function, unless the client already holds the current data; see is_modified.
+ */
+function send_fresh_response($dbconn, $build) {
+    if (is_modified($dbconn)) {
+        send_response($build());
+    }
+}
+
+/**
+ * Writes a response as CBOR when the client accepts it, or JSON otherwise.
+ * A successful response not tagged by is_modified is tagged with a strong ETag, the hash of the body, and a request
+ * whose If-None-Match holds that ETag gets a 304 Not Modified without a body instead. An error response carries no
+ * validators.
+ */
+function send_response($data) {
+    header('Vary: Accept');
+    if (wants_cbor()) {
+        header('Content-Type: application/cbor');
+        $body = cbor_encode($data);
+    } else {
+        $body = json_encode($data);
+    }
+    if (http_response_code() !== 200) {
+        header_remove('ETag');
+        header_remove('Last-Modified');
+        echo $body;
+        return;
+    }
+    if (!has_header('ETag')) {
+        $etag = '"' . md5($body) . '"';
+        header('ETag: ' . $etag);
+        if (if_none_match($etag)) {
+            http_response_code(304);
+            return;
+        }
+    }
+    echo $body;
+}
 
 $resource = $pathInfo[1];
 switch ($resource) {
     case 'members':
-        $result = pg_query_params($dbconn, 'SELECT * FROM memberships', []);
-        $memberships = [];
-        while($membership = pg_fetch_assoc($result)) {
-            $memberships[] = $membership;
+        $courseId = $_GET['course_id'] ?? null;
+        if ($courseId !== null && !preg_match(UUID_PATTERN, $courseId)) {
+            http_response_code(400);
+            send_response([
+                'error' => 'Invalid course id'
+            ]);
+        } else if (($_GET['include'] ?? null) === 'user') {
+            send_fresh_response($dbconn, fn() => fetch_members_with_users($dbconn, $courseId));
+        } else if (!isset($_GET['limit']) && wants_ndjson()) {
+            stream_rows($dbconn, 'memberships', $courseId);
+        } else {
+            send_fresh_response($dbconn, fn() => fetch_rows($dbconn, 'memberships', 'memberships', $courseId));
         }
-        echo json_encode([
-            'memberships' => $memberships
-        ]);
         break;
     case 'users':
         if (isset($pathInfo[2])) {
             $userId = $pathInfo[2];
-            $result = pg_query_params($dbconn, 'SELECT * FROM users WHERE id = $1', [$userId]);
-            $user = pg_fetch_assoc($result);
-            echo json_encode($user);
-        } else {
-            $result = pg_query_params($dbconn, 'SELECT * FROM users', []);
-            $users = [];
-            while($user = pg_fetch_assoc($result)) {
-                $users[] = $user;
+            if (!preg_match(UUID_PATTERN, $userId)) {
+                http_response_code(400);
+                send_response([
+                    'error' => 'Invalid user id'
+                ]);
+                break;
             }
-            echo json_encode([
-                'users' => $users
-            ]);
+            send_fresh_response($dbconn, function () use ($dbconn, $userId) {
+                $user = pg_fetch_assoc(pg_query_params($dbconn, 'SELECT id, name, email FROM users WHERE id = $1', [$userId]));
+                if ($user === false) {
+                    http_response_code(404);
+                    return [
+                        'error' => 'User not found'
+                    ];
+                }
+                return $user;
+            });
+        } else if (isset($_GET['ids'])) {
+            send_fresh_response($dbconn, fn() => fetch_users_by_ids($dbconn, $_GET['ids']));
+        } else if (!isset($_GET['limit']) && wants_ndjson()) {
+            stream_rows($dbconn, 'users');
+        } else {
+            send_fresh_response($dbconn, fn() => fetch_rows($dbconn, 'users', 'users'));
         }
         break;
+    case 'changes':
+        send_fresh_response($dbconn, fn() => fetch_changes($dbconn));
+        break;
     default:
         echo json_encode([
             'error' => 'Invalid resource'
         ]);
         break;
 }
-?>
\ No newline at end of file
+?>
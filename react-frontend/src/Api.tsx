@@ -1,6 +1,18 @@
-import { MembershipList } from "./Type";
+import { MembershipChanges, MembershipList } from "./Type";
 
 export const fetchMembers = async (): Promise<MembershipList> => {
     return fetch('http://localhost:8040/api/course/members')
         .then(res => res.json());
-}
\ No newline at end of file
+}
+
+export const searchMembers = async (query: string): Promise<MembershipList> => {
+    return fetch(`http://localhost:8040/api/course/members/search?q=${encodeURIComponent(query)}`)
+        .then(res => res.json());
+}
+
+export const subscribeToChanges = (onChanges: (changes: MembershipChanges) => void, onOpen: () => void): EventSource => {
+    const events = new EventSource('http://localhost:8040/api/course/members/events');
+    events.addEventListener('changes', event => onChanges(JSON.parse((event as MessageEvent).data)));
+    events.onopen = onOpen;
+    return events;
+}
@@ -1,24 +1,73 @@
-import React, { ChangeEvent, FC, useState } from 'react';
+import React, { ChangeEvent, FC, useEffect, useRef, useState } from 'react';
 import './App.css';
-import { Membership } from './Type';
-import { fetchMembers } from './Api';
+import { Membership, MembershipChanges, MembershipList } from './Type';
+import { fetchMembers, searchMembers, subscribeToChanges } from './Api';
 import { Button, Input, Modal, ModalBody, ModalHeader } from 'reactstrap';
 import turnitinLogo from './turnitin-logo.png';
 
+const byId = (first: Membership, second: Membership) => first.id < second.id ? -1 : first.id > second.id ? 1 : 0;
+
+// Applies pushed changes to the memberships shown. Search results only take updates and removals,
+// as an added membership may not match the search.
+const applyChanges = (memberships: Array<Membership>, changes: MembershipChanges, showingAll: boolean) => {
+  const removed = new Set(changes.removed);
+  const upserted = new Map(changes.upserted.map(membership => [membership.id, membership]));
+  const updated = memberships
+    .filter(membership => !removed.has(membership.id))
+    .map(membership => {
+      const changed = upserted.get(membership.id);
+      upserted.delete(membership.id);
+      return changed ?? membership;
+    });
+  if (!showingAll || upserted.size === 0) {
+    return updated;
+  }
+  return [...updated, ...Array.from(upserted.values())].sort(byId);
+}
+
 const App: FC<any> = () => {
   const [memberships, setMemberships] = useState<Array<Membership>>([]);
   const [search, setSearch] = useState<string>('');
   const [activeMembership, setActiveMembership] = useState<Membership>();
+  const latestRequest = useRef<number>(0);
+  const showingAll = useRef<boolean>(false);
+
+  const showLatest = (request: Promise<MembershipList>, all: boolean) => {
+    const requestId = ++latestRequest.current;
+    showingAll.current = all;
+    return request
+      .then(membershipList => {
+        if (requestId === latestRequest.current) {
+          setMemberships(membershipList.memberships);
+        }
+      });
+  }
 
   const loadMemberships = () => {
-    return fetchMembers()
-      .then(membershipList => setMemberships(membershipList.memberships))
+    return showLatest(search ? searchMembers(search) : fetchMembers(), !search);
   }
 
   const updateSearch = (event: ChangeEvent<HTMLInputElement>) => {
-    setSearch(event.target.value.toLowerCase());
+    const query = event.target.value.trim();
+    setSearch(query);
+    showLatest(query ? searchMembers(query) : fetchMembers(), !query);
   }
 
+  useEffect(() => {
+    // Changes missed while the stream was down are caught up by fetching the full list again, if shown.
+    let opened = false;
+    const events = subscribeToChanges(
+      changes => setMemberships(current => applyChanges(current, changes, showingAll.current)),
+      () => {
+        if (opened && showingAll.current) {
+          showLatest(fetchMembers(), true);
+        }
+        opened = true;
+      });
+    return () => events.close();
+    // eslint-disable-next-line react-hooks/exhaustive-deps
+  }, []);
+
   const loadDetailsModal = (membership: Membership) => {
     setActiveMembership(membership);
   }
@@ -46,10 +95,7 @@ const App: FC<any> = () => {
                 </tr>
               </thead>
               <tbody>
-                  { memberships.filter(membership => !search
-                    || membership.user?.name.toLowerCase().includes(search)
-                    || membership.user?.email.toLowerCase().includes(search))
-                    .map(membership => (
+                  { memberships.map(membership => (
                       <tr key={membership.id}>
                         <td>{membership.user?.name}</td>
                         <td>{membership.user?.email}</td>
@@ -13,3 +13,10 @@ export type Membership = {
 export type MembershipList = {
     memberships: Membership[];
 }
+
+export type MembershipChanges = {
+    previous_version: string;
+    version: string;
+    upserted: Membership[];
+    removed: string[];
+}